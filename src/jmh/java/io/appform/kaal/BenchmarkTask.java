@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Date;
+
+/**
+ * A no-op task used by the benchmarks
+ */
+public class BenchmarkTask implements KaalTask<BenchmarkTask, Long> {
+    private final String id;
+    private final int index;
+    private final long delay;
+
+    public BenchmarkTask(int index, long delay) {
+        this.id = "BENCHMARK_TASK_" + index;
+        this.index = index;
+        this.delay = delay;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public long delay() {
+        return delay;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public long delayToNextRun(Date currentTime) {
+        return delay;
+    }
+
+    @Override
+    public Long apply(Date date, KaalTaskData<BenchmarkTask, Long> taskData) {
+        return date.getTime();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.SneakyThrows;
+
+import java.util.Date;
+
+/**
+ * A task that blocks for a fixed time, similar to a task waiting on a remote call. Used by the benchmarks.
+ */
+public class BlockingBenchmarkTask implements KaalTask<BlockingBenchmarkTask, Long> {
+    private final String id;
+    private final long blockTime;
+
+    public BlockingBenchmarkTask(int index, long blockTime) {
+        this.id = "BLOCKING_BENCHMARK_TASK_" + index;
+        this.blockTime = blockTime;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public long delayToNextRun(Date currentTime) {
+        return -1;
+    }
+
+    @Override
+    @SneakyThrows
+    public Long apply(Date date, KaalTaskData<BlockingBenchmarkTask, Long> taskData) {
+        Thread.sleep(blockTime);
+        return date.getTime();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of computing the next fire time of a {@link KaalCronExpression}. Every invocation moves the reference time
+ * forward to the previous fire time, the way a cron task gets rescheduled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KaalCronExpressionBenchmark {
+    private static final long START = 1_700_000_000_000L;
+
+    @Param({"*/5 * * * * *", "0 9 * * MON-FRI", "0 0 29 2 *"})
+    private String expression;
+
+    @Param({"UTC", "America/New_York"})
+    private String zone;
+
+    private KaalCronExpression cronExpression;
+    private long reference;
+
+    @Setup
+    public void setup() {
+        cronExpression = KaalCronExpression.parse(expression, ZoneId.of(zone));
+        reference = START;
+    }
+
+    @Benchmark
+    public long nextFireTime() {
+        reference = cronExpression.nextFireTime(reference);
+        return reference;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a large number of blocking tasks at the same time on platform and virtual threads. Every invocation schedules
+ * all tasks to run right away and waits for all of them to complete. Add -prof gc for allocation. The peak number of
+ * platform threads is printed at the end of every trial, each of these reserves it's own stack outside the heap.
+ * On runtimes older than Java 21 both modes run on platform threads. The platform mode with 100k tasks might need
+ * higher OS limits on the number of threads per process.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class KaalExecutorBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String threadType;
+
+    @Param({"100000"})
+    private int tasks;
+
+    @Param({"100"})
+    private long blockTime;
+
+    private ExecutorService executorService;
+    private KaalScheduler<BlockingBenchmarkTask, Long> scheduler;
+    private BlockingBenchmarkTask[] blockingTasks;
+    private final Phaser completions = new Phaser(1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executorService = threadType.equals("virtual")
+                          ? KaalExecutors.virtualThreadExecutor()
+                          : KaalExecutors.platformThreadExecutor();
+        scheduler = KaalScheduler.<BlockingBenchmarkTask, Long>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskStopStrategy(taskData -> false)
+                .withExecutorService(executorService)
+                .build();
+        scheduler.onTaskCompleted().connect(taskData -> completions.arriveAndDeregister());
+        scheduler.start();
+        blockingTasks = new BlockingBenchmarkTask[tasks];
+        for (int i = 0; i < tasks; i++) {
+            blockingTasks[i] = new BlockingBenchmarkTask(i, blockTime);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nPeak platform threads: %d%n", ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        scheduler.stop();
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Run all tasks concurrently and wait for them to complete
+     */
+    @Benchmark
+    @SneakyThrows
+    public void runAll() {
+        completions.bulkRegister(tasks);
+        val phase = completions.arrive();
+        val now = new Date();
+        for (val task : blockingTasks) {
+            scheduler.scheduleAt(task, now);
+        }
+        completions.awaitAdvanceInterruptibly(phase, 5, TimeUnit.MINUTES);
+    }
+}
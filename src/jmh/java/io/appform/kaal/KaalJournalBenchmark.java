@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Time taken to recover pending runs from the journal on startup. The journal is written once per trial with every
+ * task having a single pending run an hour out. The heap is sized upfront and collected before every invocation, as
+ * a service holding this many tasks would be, so that heap resizing does not show up in the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class KaalJournalBenchmark {
+    private static final long PERIOD = 3_600_000L;
+
+    @Param({"100000", "1000000"})
+    private int pending;
+
+    private Path directory;
+    private KaalScheduler<BenchmarkTask, Long> scheduler;
+    private KaalJournal<BenchmarkTask, Long> journal;
+
+    @Setup(Level.Trial)
+    @SneakyThrows
+    public void writeJournal() {
+        directory = Files.createTempDirectory("kaal-journal-benchmark");
+        val writer = scheduler();
+        writer.start();
+        writer.scheduleAll(IntStream.range(0, pending).mapToObj(i -> new BenchmarkTask(i, PERIOD)).toList());
+        writer.stop();
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        scheduler = scheduler();
+        journal = new KaalJournal<>(directory, new BenchmarkTaskCodec(), 64 << 20, 10);
+        System.gc(); //Runs recovered by the previous invocation are garbage now
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        scheduler.stop();
+        journal.close();
+    }
+
+    @TearDown(Level.Trial)
+    @SneakyThrows
+    public void deleteJournal() {
+        try (val files = Files.walk(directory)) {
+            for (val file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Read the journal and decode pending runs
+     */
+    @Benchmark
+    @SneakyThrows
+    public List<KaalTaskData<BenchmarkTask, Long>> replay() {
+        return journal.open();
+    }
+
+    /**
+     * Start a scheduler, which replays the journal and puts pending runs back in the queue
+     */
+    @Benchmark
+    public void recover() {
+        scheduler.start();
+    }
+
+    private KaalScheduler<BenchmarkTask, Long> scheduler() {
+        return KaalScheduler.<BenchmarkTask, Long>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskStopStrategy(taskData -> false)
+                .withJournal(directory, new BenchmarkTaskCodec())
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks for the {@link KaalScheduler} hot paths with a steady number of runs pending in the queue. Pending runs
+ * are an hour out, so they never become due during a benchmark. Run with -prof gc to get allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class KaalSchedulerBenchmark {
+    private static final long PERIOD = 3_600_000L;
+    private static final int BATCH = 100;
+    private static final int CONTENDED_TASKS = 10_000;
+
+    @Param({"heap", "wheel"})
+    private String queueType;
+
+    @Param({"10000", "100000", "1000000"})
+    private int pending;
+
+    private KaalScheduler<BenchmarkTask, Long> scheduler;
+    private List<BenchmarkTask> pendingTasks;
+    private BenchmarkTask[] contendedTasks;
+    private BenchmarkTask[] dueTasks;
+    private BenchmarkTask deletedTask;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        scheduler = KaalScheduler.<BenchmarkTask, Long>builder()
+                .withPollingInterval(PERIOD) //Dispatch is driven by the benchmark
+                .withTaskStopStrategy(taskData -> false)
+                .withExecutorService(new DirectExecutorService())
+                .withTaskQueue("wheel".equals(queueType)
+                               ? KaalTimingWheelTaskQueue::new
+                               : KaalPriorityTaskQueue::new)
+                .build();
+        scheduler.start();
+        pendingTasks = IntStream.range(0, pending)
+                .mapToObj(i -> new BenchmarkTask(i, PERIOD))
+                .toList();
+        contendedTasks = IntStream.range(0, CONTENDED_TASKS)
+                .mapToObj(i -> new BenchmarkTask(pending + i, PERIOD))
+                .toArray(BenchmarkTask[]::new);
+        dueTasks = IntStream.range(0, BATCH)
+                .mapToObj(i -> new BenchmarkTask(pending + CONTENDED_TASKS + i, PERIOD))
+                .toArray(BenchmarkTask[]::new);
+        deletedTask = new BenchmarkTask(-1, PERIOD);
+    }
+
+    /**
+     * Runs scheduled during an iteration pile up in the queue, so the queue is rebuilt before every iteration
+     */
+    @Setup(Level.Iteration)
+    public void fillQueue() {
+        scheduler.clear();
+        scheduler.scheduleAll(pendingTasks.stream(), new Date());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.stop();
+    }
+
+    /**
+     * Schedule a run from a single thread
+     */
+    @Benchmark
+    public Object schedule() {
+        return scheduler.schedule(nextContendedTask());
+    }
+
+    /**
+     * Schedule runs from all available threads at the same time
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object scheduleContended() {
+        return scheduler.schedule(nextContendedTask());
+    }
+
+    /**
+     * Schedule a run and delete the task. Subtract {@link #schedule()} to get the cost of a delete.
+     */
+    @Benchmark
+    public void scheduleAndDelete() {
+        scheduler.schedule(deletedTask);
+        scheduler.delete(deletedTask.id());
+    }
+
+    /**
+     * Schedule a batch of runs that are already due and dispatch them. Runs execute on the dispatching thread, so this
+     * covers the complete life of a run: queueing, dispatch, execution and completion handling.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void dispatch() {
+        val now = new Date();
+        for (val task : dueTasks) {
+            scheduler.scheduleAt(task, now);
+        }
+        scheduler.processQueuedTask(now.getTime());
+    }
+
+    private BenchmarkTask nextContendedTask() {
+        return contendedTasks[ThreadLocalRandom.current().nextInt(CONTENDED_TASKS)];
+    }
+}
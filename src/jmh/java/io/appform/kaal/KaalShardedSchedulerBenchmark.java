@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how {@link KaalShardedScheduler} scales with the number of partitions. A partition count of 1 is
+ * equivalent to a plain {@link KaalScheduler}. Run with -t to vary the number of threads scheduling runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KaalShardedSchedulerBenchmark {
+    private static final int RUNS = 10_000;
+    private static final long FAR_FUTURE = 3_600_000L;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    private int partitions;
+
+    private ExecutorService executorService;
+    private KaalShardedScheduler<BenchmarkTask, Long> scheduler;
+    private BenchmarkTask[] tasks;
+    private final AtomicInteger nextTask = new AtomicInteger();
+    private final Phaser completions = new Phaser(1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        scheduler = KaalScheduler.<BenchmarkTask, Long>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskStopStrategy(taskData -> false)
+                .withExecutorService(executorService)
+                .withPartitionCount(partitions)
+                .buildSharded();
+        scheduler.onTaskCompleted().connect(taskData -> completions.arriveAndDeregister());
+        scheduler.start();
+        tasks = new BenchmarkTask[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            tasks[i] = new BenchmarkTask(i, FAR_FUTURE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        scheduler.stop();
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Schedule and delete runs from all benchmark threads. Measures contention on the queue locks.
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void scheduleAndDelete() {
+        val task = tasks[Math.floorMod(nextTask.getAndIncrement(), RUNS)];
+        scheduler.schedule(task);
+        scheduler.delete(task.id());
+    }
+
+    /**
+     * Schedule a batch of runs that are due right away and wait for all of them to complete. Measures end-to-end
+     * dispatch throughput.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RUNS)
+    @SneakyThrows
+    public void dispatch() {
+        completions.bulkRegister(RUNS);
+        val phase = completions.arrive();
+        val now = new Date();
+        for (val task : tasks) {
+            scheduler.scheduleAt(task, now);
+        }
+        completions.awaitAdvanceInterruptibly(phase, 1, TimeUnit.MINUTES);
+    }
+}
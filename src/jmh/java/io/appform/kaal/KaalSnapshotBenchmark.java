@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Time taken to write a snapshot of the queue and to restore it into a fresh scheduler. Every task has a single
+ * pending run an hour out. The heap is sized upfront and collected before every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class KaalSnapshotBenchmark {
+    private static final long PERIOD = 3_600_000L;
+
+    @Param({"1000", "1000000"})
+    private int pending;
+
+    private Path snapshot;
+    private KaalScheduler<BenchmarkTask, Long> source;
+    private KaalScheduler<BenchmarkTask, Long> target;
+
+    @Setup(Level.Trial)
+    @SneakyThrows
+    public void setup() {
+        snapshot = Files.createTempFile("kaal-snapshot-benchmark", ".bin");
+        source = scheduler();
+        source.start();
+        source.scheduleAll(IntStream.range(0, pending).mapToObj(i -> new BenchmarkTask(i, PERIOD)).toList());
+        source.snapshot(snapshot);
+    }
+
+    @Setup(Level.Invocation)
+    public void createTarget() {
+        target = scheduler();
+        target.start();
+        System.gc(); //Runs restored by the previous invocation are garbage now
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopTarget() {
+        target.stop();
+    }
+
+    @TearDown(Level.Trial)
+    @SneakyThrows
+    public void tearDown() {
+        source.stop();
+        Files.deleteIfExists(snapshot);
+    }
+
+    /**
+     * Write a snapshot of the source scheduler to a file
+     */
+    @Benchmark
+    @SneakyThrows
+    public long snapshot() {
+        return source.snapshot(snapshot);
+    }
+
+    /**
+     * Restore the snapshot into a freshly started scheduler
+     */
+    @Benchmark
+    @SneakyThrows
+    public long restore() {
+        return target.restore(snapshot);
+    }
+
+    private static KaalScheduler<BenchmarkTask, Long> scheduler() {
+        return KaalScheduler.<BenchmarkTask, Long>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskStopStrategy(taskData -> false)
+                .withTaskCodec(new BenchmarkTaskCodec())
+                .build();
+    }
+}
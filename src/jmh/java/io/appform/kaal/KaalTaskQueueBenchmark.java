@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link KaalPriorityTaskQueue} and {@link KaalTimingWheelTaskQueue} with a steady number of pending runs.
+ * Pending runs are spread uniformly over a one-hour window, as is the case with a large set of recurring tasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KaalTaskQueueBenchmark {
+    private static final long PERIOD = 3_600_000L;
+
+    @Param({"heap", "wheel"})
+    private String queueType;
+
+    @Param({"10000", "100000", "1000000"})
+    private int pending;
+
+    private KaalTaskQueue<BenchmarkTask, Long> queue;
+    private SplittableRandom random;
+    private BenchmarkTask task;
+    private long now;
+    private long step;
+
+    @Setup
+    public void setup() {
+        now = System.currentTimeMillis();
+        queue = "wheel".equals(queueType)
+                ? new KaalTimingWheelTaskQueue<>(now)
+                : new KaalPriorityTaskQueue<>();
+        random = new SplittableRandom(42);
+        task = new BenchmarkTask(0, PERIOD);
+        for (int i = 0; i < pending; i++) {
+            queue.put(new KaalTaskData<>("RUN_" + i, task, now + random.nextLong(PERIOD)));
+        }
+        step = Math.max(1, PERIOD / pending);
+    }
+
+    /**
+     * Schedule a run at a random time in the window and cancel it
+     */
+    @Benchmark
+    public boolean insertAndCancel() {
+        val taskData = new KaalTaskData<>("RUN", task, now + random.nextLong(PERIOD));
+        queue.put(taskData);
+        return queue.remove(taskData);
+    }
+
+    /**
+     * Advance the clock, expire due runs and reschedule each one a period later, like a recurring task would
+     */
+    @Benchmark
+    public int expireAndReschedule() {
+        now += step;
+        var expired = 0;
+        KaalTaskData<BenchmarkTask, Long> taskData;
+        while (null != (taskData = queue.pollDue(now))) {
+            queue.put(new KaalTaskData<>(taskData.getRunId(),
+                                         task,
+                                         taskData.getTargetExecutionTimeMillis() + PERIOD));
+            expired++;
+        }
+        return expired;
+    }
+}
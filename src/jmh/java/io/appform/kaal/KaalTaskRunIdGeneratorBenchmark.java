@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of generating run ids with the available {@link KaalTaskRunIdGenerator} implementations
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KaalTaskRunIdGeneratorBenchmark {
+
+    @Param({"random", "snowflake", "deterministic"})
+    private String generatorType;
+
+    private KaalTaskRunIdGenerator<BenchmarkTask, Long> generator;
+    private final BenchmarkTask task = new BenchmarkTask(0, 1_000);
+    private final Date executionTime = new Date();
+
+    @Setup
+    public void setup() {
+        generator = switch (generatorType) {
+            case "random" -> new KaalRandomTaskRunIdGenerator<>();
+            case "snowflake" -> new KaalSnowflakeTaskRunIdGenerator<>(1);
+            case "deterministic" -> new KaalDeterministicTaskRunIdGenerator<>();
+            default -> throw new IllegalArgumentException("Unknown generator type: " + generatorType);
+        };
+    }
+
+    @Benchmark
+    public String generateId() {
+        return generator.generateId(task, executionTime);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String generateIdContended() {
+        return generator.generateId(task, executionTime);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.Getter;
+import lombok.val;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of runs underway. A single instance is shared by all partitions of a
+ * {@link KaalShardedScheduler}, so the global limit applies across partitions. Thread safe.
+ */
+final class KaalAdmissionControl {
+    /**
+     * Maximum number of runs underway across all tasks. Zero means unlimited.
+     */
+    @Getter
+    private final int maxInFlight;
+
+    /**
+     * Maximum number of runs underway for a task that does not set {@link KaalTask#maxConcurrentRuns()}. Zero means
+     * unlimited.
+     */
+    @Getter
+    private final int maxInFlightPerTask;
+
+    @Getter
+    private final KaalDeferralPolicy deferralPolicy;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Runnable> capacityListeners = new CopyOnWriteArrayList<>();
+
+    KaalAdmissionControl(int maxInFlight, int maxInFlightPerTask, KaalDeferralPolicy deferralPolicy) {
+        this.maxInFlight = Math.max(0, maxInFlight);
+        this.maxInFlightPerTask = Math.max(0, maxInFlightPerTask);
+        this.deferralPolicy = deferralPolicy;
+    }
+
+    /**
+     * Check if due runs need to stay in the queue till a run completes
+     * @return True if the global limit has been reached and the deferral policy is {@link KaalDeferralPolicy#WAIT}
+     */
+    boolean dispatchBlocked() {
+        return deferralPolicy == KaalDeferralPolicy.WAIT && !hasCapacity();
+    }
+
+    boolean hasCapacity() {
+        return maxInFlight == 0 || inFlight.get() < maxInFlight;
+    }
+
+    /**
+     * Reserve a slot for a run
+     * @return False if the global limit has been reached
+     */
+    boolean tryAcquire() {
+        if (maxInFlight == 0) {
+            return true;
+        }
+        while (true) {
+            val current = inFlight.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release the slot held by a run. Listeners are notified if the global limit had been reached. Must not be called
+     * with a scheduler lock held.
+     */
+    void release() {
+        if (maxInFlight == 0) {
+            return;
+        }
+        if (inFlight.getAndDecrement() == maxInFlight) {
+            capacityListeners.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Limit on runs underway for a task. Runs of a {@link KaalScheduleMode#FIXED_RATE} task do not overlap unless a
+     * limit has been set.
+     * @param task The task
+     * @return Maximum number of runs underway for the task, zero if unlimited
+     */
+    int maxInFlightFor(final KaalTask<?, ?> task) {
+        val taskLimit = task.maxConcurrentRuns();
+        if (taskLimit > 0) {
+            return taskLimit;
+        }
+        if (maxInFlightPerTask > 0) {
+            return maxInFlightPerTask;
+        }
+        return task.scheduleMode() == KaalScheduleMode.FIXED_RATE ? 1 : 0;
+    }
+
+    void onCapacityAvailable(final Runnable listener) {
+        capacityListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added using {@link #onCapacityAvailable(Runnable)}. A stopped scheduler must remove its
+     * listener, or the instance it shares with other partitions keeps it reachable.
+     */
+    void removeCapacityListener(final Runnable listener) {
+        capacityListeners.remove(listener);
+    }
+
+    int capacityListenerCount() {
+        return capacityListeners.size();
+    }
+}
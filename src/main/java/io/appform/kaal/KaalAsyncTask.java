@@ -0,0 +1,43 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Date;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A task that runs asynchronously. The scheduler calls {@link #applyAsync(Date, KaalTaskData)} on an executor thread
+ * and releases the thread as soon as the method returns. The run is considered complete when the returned stage
+ * completes, at which point the completion signal is raised and the next run is scheduled. These happen on the thread
+ * that completes the stage, so avoid long-running completion handlers.
+ */
+public interface KaalAsyncTask<T extends KaalAsyncTask<T, R>, R> extends KaalTask<T, R> {
+
+    /**
+     * Start a run of the task
+     * @param currentTime Time at which the run was started
+     * @param taskData Data for the current run
+     * @return A stage that completes with the result of the run, or completes exceptionally if the run fails
+     */
+    CompletionStage<R> applyAsync(Date currentTime, KaalTaskData<T, R> taskData);
+
+    /**
+     * Run the task and wait for it to complete. Not used by the scheduler.
+     */
+    @Override
+    default R apply(Date currentTime, KaalTaskData<T, R> taskData) {
+        return applyAsync(currentTime, taskData).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long the next run of a task is held back after consecutive failed runs. A run fails if it throws or
+ * times out. The next run starts no earlier than the backoff after the failed run completed, or at its normal time if
+ * that is later. The first successful run resets the count. Implementations are called on every failed run and need
+ * to be thread safe and fast.
+ */
+@FunctionalInterface
+public interface KaalBackoffPolicy {
+    /**
+     * Runs are scheduled as usual after failures. This is the default.
+     */
+    KaalBackoffPolicy NONE = consecutiveFailures -> 0;
+
+    /**
+     * Backoff after a failed run
+     * @param consecutiveFailures Number of runs of the task that have failed in a row, including the latest one
+     * @return Backoff in milliseconds. Zero or negative for none.
+     */
+    long backoff(int consecutiveFailures);
+
+    /**
+     * Double the backoff with every consecutive failure, starting at the initial backoff and up to the maximum. Half of
+     * the backoff is randomised, so that tasks failing together do not retry together.
+     * @param initialBackoff Backoff after the first failure, in milliseconds. Must be positive.
+     * @param maxBackoff Upper limit for the backoff, in milliseconds. Must not be less than the initial backoff.
+     * @return Policy instance
+     */
+    static KaalBackoffPolicy exponential(long initialBackoff, long maxBackoff) {
+        return exponential(initialBackoff, maxBackoff, 0.5);
+    }
+
+    /**
+     * Double the backoff with every consecutive failure, starting at the initial backoff and up to the maximum
+     * @param initialBackoff Backoff after the first failure, in milliseconds. Must be positive.
+     * @param maxBackoff Upper limit for the backoff, in milliseconds. Must not be less than the initial backoff.
+     * @param jitter Fraction of the backoff that is randomised, between 0 and 1. With 0.5, the backoff is somewhere
+     *               between half and all of the computed value. Zero for none.
+     * @return Policy instance
+     */
+    static KaalBackoffPolicy exponential(long initialBackoff, long maxBackoff, double jitter) {
+        if (initialBackoff <= 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Initial backoff must be positive and not more than the maximum. "
+                                                       + "Provided initial: " + initialBackoff
+                                                       + " maximum: " + maxBackoff);
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1. Provided: " + jitter);
+        }
+        return consecutiveFailures -> {
+            //Doubling stops well before overflow, the maximum is reached long before that anyway
+            val backoff = consecutiveFailures > 62
+                                 ? maxBackoff
+                                 : Math.min(maxBackoff,
+                                            (long) (initialBackoff * Math.pow(2, consecutiveFailures - 1.0)));
+            if (jitter == 0) {
+                return backoff;
+            }
+            return backoff - (long) (backoff * jitter * ThreadLocalRandom.current().nextDouble());
+        };
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Circuit breakers on dispatch of runs, one for each task group with a breaker configured. A circuit opens once the
+ * configured number of runs of the group fail in a row, after which due runs of the group are held back. Once the
+ * circuit has been open for the configured duration, a single due run is let through as a probe and the rest are held
+ * back for another open duration. A successful run closes the circuit, a failed one keeps it open. A single instance is
+ * shared by all partitions of a {@link KaalShardedScheduler}, so breakers apply across partitions. Thread safe.
+ */
+final class KaalCircuitBreaker<T extends KaalTask<T, R>, R> {
+
+    /**
+     * Failures needed to open a circuit and time for which it stays open before a probe
+     */
+    record Settings(int failureThreshold, long openDuration) {
+        Settings {
+            if (failureThreshold <= 0 || openDuration <= 0) {
+                throw new IllegalArgumentException("Failure threshold and open duration must be positive. Provided "
+                                                           + "threshold: " + failureThreshold
+                                                           + " duration: " + openDuration);
+            }
+        }
+    }
+
+    private static final class Circuit {
+        private final Settings settings;
+        private int consecutiveFailures;
+        private boolean open;
+        private long probeTime;
+
+        private Circuit(final Settings settings) {
+            this.settings = settings;
+        }
+
+        synchronized long permit(long currentTime) {
+            if (!open) {
+                return currentTime;
+            }
+            if (currentTime < probeTime) {
+                return probeTime;
+            }
+            probeTime = currentTime + settings.openDuration(); //Everything else waits for the outcome of the probe
+            return currentTime;
+        }
+
+        synchronized boolean record(boolean failed, long currentTime) {
+            if (!failed) {
+                consecutiveFailures = 0;
+                open = false;
+                return false;
+            }
+            consecutiveFailures++;
+            if (!open && consecutiveFailures < settings.failureThreshold()) {
+                return false;
+            }
+            val opened = !open;
+            open = true;
+            probeTime = currentTime + settings.openDuration();
+            return opened;
+        }
+
+        synchronized boolean isOpen() {
+            return open;
+        }
+    }
+
+    private final Function<T, String> groupExtractor;
+    private final Map<String, Circuit> circuits;
+
+    KaalCircuitBreaker(final Function<T, String> groupExtractor, final Map<String, Settings> settings) {
+        this.groupExtractor = groupExtractor;
+        this.circuits = settings.entrySet()
+                .stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> new Circuit(entry.getValue())));
+    }
+
+    /**
+     * Check if a run of the task can be dispatched. Lets the run through as a probe if the circuit has been open long
+     * enough.
+     * @param task Task for the run
+     * @param currentTime Current time in epoch milliseconds
+     * @return Time at which to check again. At or before current time if the run can start right away.
+     */
+    long permit(final T task, long currentTime) {
+        val circuit = circuitFor(task);
+        return null == circuit ? currentTime : circuit.permit(currentTime);
+    }
+
+    /**
+     * Record the outcome of a run of the task
+     * @param task Task for the run
+     * @param failed True if the run failed
+     * @param currentTime Current time in epoch milliseconds
+     * @return True if the circuit for the group of the task was opened by this outcome
+     */
+    boolean record(final T task, boolean failed, long currentTime) {
+        val circuit = circuitFor(task);
+        return null != circuit && circuit.record(failed, currentTime);
+    }
+
+    /**
+     * Check if the circuit for a group is open
+     * @param group Task group
+     * @return True if the group has a breaker and its circuit is open
+     */
+    boolean isOpen(final String group) {
+        val circuit = circuits.get(group);
+        return null != circuit && circuit.isOpen();
+    }
+
+    private Circuit circuitFor(final T task) {
+        val group = groupExtractor.apply(task);
+        return null == group ? null : circuits.get(group);
+    }
+}
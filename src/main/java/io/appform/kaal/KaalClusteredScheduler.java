@@ -0,0 +1,637 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import io.appform.signals.signals.ConsumingSyncSignal;
+import io.appform.signals.signals.ScheduledSignal;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * A scheduler for services that run on multiple nodes, where every task needs to run on only one of them. Every node
+ * schedules all tasks, as it would with a plain {@link KaalScheduler}. Tasks are assigned to partitions based on the
+ * hash of {@link KaalTask#id()}, and every node only runs tasks in the partitions it holds a lease for.
+ * Leases are held in a shared {@link KaalLeaseStore} and renewed periodically. Partitions are spread over the live
+ * nodes using rendezvous hashing, so when a node joins or leaves only the partitions it gains or loses move.
+ * Once a node picks up a partition, it schedules all tasks in the partition afresh, with the time of acquisition as
+ * the reference time. A node stops running a partition as soon as it fails to renew the lease in time.
+ * NOTE:
+ * - All nodes must use the same partition count and lease duration
+ * - Scheduling and deletion of tasks is local to the node. Every node is expected to schedule and delete the same
+ *   tasks.
+ * - Tasks stopped by the stop strategy get scheduled again if their partition moves to another node
+ * Use {@link KaalSchedulerBuilder#buildClustered(String, KaalLeaseStore)} to create one.
+ */
+@Slf4j
+public final class KaalClusteredScheduler<T extends KaalTask<T, R>, R> {
+    /**
+     * Counters kept by every partition. Counts of partitions this node stops running are carried over, so the totals
+     * cover every partition this node has run.
+     */
+    private enum Counter {
+        DROPPED_COMPLETIONS(KaalScheduler::droppedCompletionCount),
+        DEFERRED_RUNS(KaalScheduler::deferredRunCount),
+        SKIPPED_RUNS(KaalScheduler::skippedRunCount),
+        RATE_LIMITED_RUNS(KaalScheduler::rateLimitedRunCount),
+        MISFIRED_RUNS(KaalScheduler::misfiredRunCount),
+        TIMED_OUT_RUNS(KaalScheduler::timedOutRunCount),
+        BACKED_OFF_RUNS(KaalScheduler::backedOffRunCount),
+        CIRCUIT_HELD_RUNS(KaalScheduler::circuitHeldRunCount);
+
+        private final ToLongFunction<KaalScheduler<?, ?>> reader;
+
+        Counter(ToLongFunction<KaalScheduler<?, ?>> reader) {
+            this.reader = reader;
+        }
+    }
+
+    private final String nodeId;
+    private final KaalLeaseStore leaseStore;
+    private final long leaseDuration;
+    private final long renewalInterval;
+    private final int partitionCount;
+    private final IntFunction<KaalScheduler<T, R>> partitionFactory;
+
+    private final Lock lock = new ReentrantLock();
+    private final List<Map<String, T>> partitionTasks;
+    private final List<KaalScheduler<T, R>> ownedPartitions;
+    private final long[] renewedAt;
+    private final long[] retiredCounts = new long[Counter.values().length];
+    private final ScheduledSignal leaseManager;
+    private volatile boolean running;
+
+    private final ConsumingSyncSignal<KaalTaskData<T, R>> taskCompleted = new ConsumingSyncSignal<>();
+    private final ConsumingSyncSignal<List<KaalTaskData<T, R>>> taskCompletionBatch = new ConsumingSyncSignal<>();
+
+    KaalClusteredScheduler(
+            final String nodeId,
+            final KaalLeaseStore leaseStore,
+            long leaseDuration,
+            int partitionCount,
+            final IntFunction<KaalScheduler<T, R>> partitionFactory) {
+        this.nodeId = nodeId;
+        this.leaseStore = leaseStore;
+        this.leaseDuration = leaseDuration;
+        this.renewalInterval = Math.max(1, leaseDuration / 3);
+        this.partitionCount = partitionCount;
+        this.partitionFactory = partitionFactory;
+        this.partitionTasks = new ArrayList<>(partitionCount);
+        this.ownedPartitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitionTasks.add(new HashMap<>());
+            ownedPartitions.add(null);
+        }
+        this.renewedAt = new long[partitionCount];
+        this.leaseManager = ScheduledSignal.builder()
+                .errorHandler(e -> log.error("Error maintaining partition leases: " + e.getMessage(), e))
+                .interval(Duration.ofMillis(renewalInterval))
+                .build();
+    }
+
+    /**
+     * Join the cluster. Partitions are picked up on the next lease renewal cycle.
+     */
+    public void start() {
+        running = true;
+        leaseManager.connect(currentTime -> maintainLeases());
+        log.info("Node {} joined cluster with {} partitions", nodeId, partitionCount);
+    }
+
+    /**
+     * Stop all partitions owned by this node, give up their leases and leave the cluster. The remaining nodes pick up
+     * the partitions on their next lease renewal cycle.
+     */
+    public void stop() {
+        running = false;
+        leaseManager.close();
+        lock.lock();
+        try {
+            for (int i = 0; i < partitionCount; i++) {
+                if (null != ownedPartitions.get(i)) {
+                    stopPartition(i);
+                    leaseStore.release(i, nodeId);
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        leaseStore.leave(nodeId);
+        log.info("Node {} left cluster", nodeId);
+    }
+
+    /**
+     * Signal that gets invoked when a task run completes on any partition owned by this node. See
+     * {@link KaalScheduler#onTaskCompleted()}.
+     *
+     * @return A reference to a synchronized signal
+     */
+    public ConsumingSyncSignal<KaalTaskData<T, R>> onTaskCompleted() {
+        return taskCompleted;
+    }
+
+    /**
+     * Signal that gets invoked with a batch of completed runs from a partition owned by this node. See
+     * {@link KaalScheduler#onTaskCompletionBatch()}.
+     *
+     * @return A reference to a synchronized signal
+     */
+    public ConsumingSyncSignal<List<KaalTaskData<T, R>>> onTaskCompletionBatch() {
+        return taskCompletionBatch;
+    }
+
+    /**
+     * Id of this node
+     * @return Node id
+     */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Number of partitions tasks are spread over
+     * @return Partition count
+     */
+    public int partitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Partitions this node currently holds the lease for
+     * @return Indices of the owned partitions in ascending order
+     */
+    public Set<Integer> ownedPartitions() {
+        lock.lock();
+        try {
+            val owned = new TreeSet<Integer>();
+            for (int i = 0; i < partitionCount; i++) {
+                if (null != ownedPartitions.get(i)) {
+                    owned.add(i);
+                }
+            }
+            return owned;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Scheduler for a partition
+     * @param partition Index of the partition
+     * @return The scheduler, null if this node does not hold the lease for the partition
+     */
+    KaalScheduler<T, R> partitionScheduler(int partition) {
+        lock.lock();
+        try {
+            return ownedPartitions.get(partition);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * See {@link KaalScheduler#droppedCompletionCount()}
+     * @return Count of dropped completion events across all partitions this node has run
+     */
+    public long droppedCompletionCount() {
+        return count(Counter.DROPPED_COMPLETIONS);
+    }
+
+    /**
+     * See {@link KaalScheduler#deferredRunCount()}
+     * @return Count of deferred runs across all partitions this node has run
+     */
+    public long deferredRunCount() {
+        return count(Counter.DEFERRED_RUNS);
+    }
+
+    /**
+     * See {@link KaalScheduler#skippedRunCount()}
+     * @return Count of skipped runs across all partitions this node has run
+     */
+    public long skippedRunCount() {
+        return count(Counter.SKIPPED_RUNS);
+    }
+
+    /**
+     * See {@link KaalScheduler#rateLimitedRunCount()}
+     * @return Count of rate limited runs across all partitions this node has run
+     */
+    public long rateLimitedRunCount() {
+        return count(Counter.RATE_LIMITED_RUNS);
+    }
+
+    /**
+     * See {@link KaalScheduler#misfiredRunCount()}
+     * @return Count of misfired runs across all partitions this node has run
+     */
+    public long misfiredRunCount() {
+        return count(Counter.MISFIRED_RUNS);
+    }
+
+    /**
+     * See {@link KaalScheduler#timedOutRunCount()}
+     * @return Count of timed out runs across all partitions this node has run
+     */
+    public long timedOutRunCount() {
+        return count(Counter.TIMED_OUT_RUNS);
+    }
+
+    /**
+     * See {@link KaalScheduler#backedOffRunCount()}
+     * @return Count of backed off runs across all partitions this node has run
+     */
+    public long backedOffRunCount() {
+        return count(Counter.BACKED_OFF_RUNS);
+    }
+
+    /**
+     * See {@link KaalScheduler#circuitHeldRunCount()}
+     * @return Count of runs held back by circuit breakers across all partitions this node has run
+     */
+    public long circuitHeldRunCount() {
+        return count(Counter.CIRCUIT_HELD_RUNS);
+    }
+
+    /**
+     * See {@link KaalScheduler#nextRun(String)}
+     * @param taskId Id for the task
+     * @return A copy of the earliest pending run for the task, empty if the task has none or is not run by this node
+     */
+    public Optional<KaalTaskData<T, R>> nextRun(final String taskId) {
+        return queryOwner(taskId, scheduler -> scheduler.nextRun(taskId), Optional.empty());
+    }
+
+    /**
+     * See {@link KaalScheduler#pendingRuns(String)}
+     * @param taskId Id for the task
+     * @return Copies of the pending runs for the task ordered by target execution time, empty if the task is not run
+     * by this node
+     */
+    public List<KaalTaskData<T, R>> pendingRuns(final String taskId) {
+        return queryOwner(taskId, scheduler -> scheduler.pendingRuns(taskId), List.of());
+    }
+
+    /**
+     * See {@link KaalScheduler#pendingCount()}
+     * @return Count of pending runs across the partitions owned by this node
+     */
+    public int pendingCount() {
+        return (int) sumOwned(KaalScheduler::pendingCount);
+    }
+
+    /**
+     * See {@link KaalScheduler#inFlight()}
+     * @return Count of runs underway across the partitions owned by this node
+     */
+    public int inFlight() {
+        return (int) sumOwned(KaalScheduler::inFlight);
+    }
+
+    /**
+     * See {@link KaalScheduler#inFlight(String)}
+     * @param taskId Id for the task
+     * @return Count of runs underway for the task, zero if the task is not run by this node
+     */
+    public int inFlight(final String taskId) {
+        return queryOwner(taskId, scheduler -> scheduler.inFlight(taskId), 0);
+    }
+
+    /**
+     * See {@link KaalScheduler#earliestDeadline()}
+     * @return Earliest deadline across the partitions owned by this node, empty if they have no pending runs
+     */
+    public Optional<Date> earliestDeadline() {
+        lock.lock();
+        try {
+            return ownedPartitions.stream()
+                    .filter(Objects::nonNull)
+                    .map(KaalScheduler::earliestDeadline)
+                    .flatMap(Optional::stream)
+                    .min(Comparator.naturalOrder());
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Schedule a task. The task is run by this node only if it owns the partition the task belongs to.
+     *
+     * @param task Task to be scheduled. Must inherit from {@link KaalTask}
+     * @return Id for the first run if the task will be run by this node, empty otherwise
+     */
+    public Optional<String> schedule(final T task) {
+        return scheduleOnOwner(task, scheduler -> scheduler.schedule(task));
+    }
+
+    /**
+     * Schedule a task with a reference time. See {@link KaalScheduler#schedule(KaalTask, Date)}. The reference time
+     * only applies on this node, a node that picks up the partition later schedules the task from the time of pickup.
+     *
+     * @param task     Task to be scheduled. Must inherit from {@link KaalTask}
+     * @param currTime Reference time to be used to calculate subsequent runs
+     * @return Id for the first run if the task will be run by this node, empty otherwise
+     */
+    public Optional<String> schedule(final T task, final Date currTime) {
+        return scheduleOnOwner(task, scheduler -> scheduler.schedule(task, currTime));
+    }
+
+    /**
+     * Schedule the first run of a task at a fixed time. See {@link KaalScheduler#scheduleAt(KaalTask, Date)}. As with
+     * {@link #schedule(KaalTask, Date)}, a node that picks up the partition later schedules the task from the time
+     * of pickup.
+     *
+     * @param task     Task to be scheduled. Must inherit from {@link KaalTask}
+     * @param currTime Time for first run.
+     * @return Id for the first run if the task will be run by this node, empty otherwise
+     */
+    public Optional<String> scheduleAt(final T task, final Date currTime) {
+        return scheduleOnOwner(task, scheduler -> scheduler.scheduleAt(task, currTime));
+    }
+
+    /**
+     * Schedule the first run of a task right away. See {@link KaalScheduler#scheduleNow(KaalTask)}.
+     *
+     * @param task Task to be scheduled. Must inherit from {@link KaalTask}
+     * @return Id for the first run if the task will be run by this node, empty otherwise
+     */
+    public Optional<String> scheduleNow(final T task) {
+        return scheduleOnOwner(task, scheduler -> scheduler.scheduleNow(task));
+    }
+
+    /**
+     * Schedule a batch of tasks. See {@link #schedule(KaalTask)}.
+     *
+     * @param tasks Tasks to be scheduled. Must inherit from {@link KaalTask}
+     * @return Ids for the first runs, in the same order as the tasks. Empty for tasks that were not scheduled or are
+     * not run by this node.
+     */
+    public List<Optional<String>> scheduleAll(final Collection<T> tasks) {
+        return scheduleAll(tasks.stream(), new Date());
+    }
+
+    /**
+     * Schedule a batch of tasks with a reference time. See {@link KaalScheduler#scheduleAll(Stream, Date)} and
+     * {@link #schedule(KaalTask, Date)}. Every owned partition gets one batch.
+     *
+     * @param tasks         Tasks to be scheduled. Must inherit from {@link KaalTask}
+     * @param referenceTime Reference time to be used to calculate first and subsequent runs
+     * @return Ids for the first runs, in the same order as the tasks. Empty for tasks that were not scheduled or are
+     * not run by this node.
+     */
+    public List<Optional<String>> scheduleAll(final Stream<T> tasks, final Date referenceTime) {
+        val batch = tasks.toList();
+        val result = new ArrayList<>(Collections.nCopies(batch.size(), Optional.<String>empty()));
+        lock.lock();
+        try {
+            val owned = new HashMap<Integer, List<Integer>>();
+            for (int i = 0; i < batch.size(); i++) {
+                val task = batch.get(i);
+                val partition = KaalShardedScheduler.partitionIndex(task.id(), partitionCount);
+                partitionTasks.get(partition).put(task.id(), task);
+                if (null != ownedPartitions.get(partition)) {
+                    owned.computeIfAbsent(partition, p -> new ArrayList<>()).add(i);
+                }
+            }
+            owned.forEach((partition, positions) -> {
+                val runIds = ownedPartitions.get(partition)
+                        .scheduleAll(positions.stream().map(batch::get), referenceTime);
+                for (int j = 0; j < positions.size(); j++) {
+                    result.set(positions.get(j), runIds.get(j));
+                }
+            });
+        }
+        finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Delete a task. See {@link KaalScheduler#delete(String)}.
+     *
+     * @param id Id for the task to be deleted
+     */
+    public void delete(final String id) {
+        val partition = KaalShardedScheduler.partitionIndex(id, partitionCount);
+        lock.lock();
+        try {
+            partitionTasks.get(partition).remove(id);
+            val scheduler = ownedPartitions.get(partition);
+            if (null != scheduler) {
+                scheduler.delete(id);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Renew leases for owned partitions and pick up or give up partitions as per the current set of live nodes
+     */
+    private void maintainLeases() {
+        if (!running) {
+            return;
+        }
+        dropExpiringPartitions(); //Done first, so that a failing lease store can not keep expired partitions running
+        leaseStore.heartbeat(nodeId, leaseDuration);
+        val liveNodes = new HashSet<>(leaseStore.liveNodes());
+        liveNodes.add(nodeId);
+        for (int i = 0; i < partitionCount && running; i++) {
+            val owned = isOwned(i);
+            val assigned = nodeId.equals(ownerOf(i, liveNodes));
+            val requestTime = System.currentTimeMillis();
+            if (owned && !assigned) {
+                stopPartition(i);
+                leaseStore.release(i, nodeId);
+                log.info("Node {} handed over partition {}", nodeId, i);
+            }
+            else if (owned) {
+                if (leaseStore.tryAcquire(i, nodeId, leaseDuration)) {
+                    renewedAt[i] = requestTime;
+                }
+                else {
+                    log.warn("Node {} lost lease for partition {}", nodeId, i);
+                    stopPartition(i);
+                }
+            }
+            else if (assigned && leaseStore.tryAcquire(i, nodeId, leaseDuration)) {
+                renewedAt[i] = requestTime;
+                startPartition(i);
+                log.info("Node {} picked up partition {}", nodeId, i);
+            }
+        }
+    }
+
+    /**
+     * Stop partitions whose lease will expire before the next renewal cycle
+     */
+    private void dropExpiringPartitions() {
+        val now = System.currentTimeMillis();
+        for (int i = 0; i < partitionCount; i++) {
+            if (isOwned(i) && now >= renewedAt[i] + leaseDuration - renewalInterval) {
+                log.warn("Lease for partition {} could not be renewed in time, node {} will stop running it",
+                         i, nodeId);
+                stopPartition(i);
+            }
+        }
+    }
+
+    private Optional<String> scheduleOnOwner(
+            final T task,
+            final Function<KaalScheduler<T, R>, Optional<String>> action) {
+        val partition = KaalShardedScheduler.partitionIndex(task.id(), partitionCount);
+        lock.lock();
+        try {
+            partitionTasks.get(partition).put(task.id(), task);
+            val scheduler = ownedPartitions.get(partition);
+            return null == scheduler ? Optional.empty() : action.apply(scheduler);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private <V> V queryOwner(final String taskId, final Function<KaalScheduler<T, R>, V> query, final V notOwned) {
+        lock.lock();
+        try {
+            val scheduler = ownedPartitions.get(KaalShardedScheduler.partitionIndex(taskId, partitionCount));
+            return null == scheduler ? notOwned : query.apply(scheduler);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private long sumOwned(final ToLongFunction<KaalScheduler<T, R>> reader) {
+        lock.lock();
+        try {
+            var total = 0L;
+            for (val scheduler : ownedPartitions) {
+                if (null != scheduler) {
+                    total += reader.applyAsLong(scheduler);
+                }
+            }
+            return total;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private long count(final Counter counter) {
+        lock.lock();
+        try {
+            return retiredCounts[counter.ordinal()] + sumOwned(counter.reader::applyAsLong);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isOwned(int partition) {
+        lock.lock();
+        try {
+            return null != ownedPartitions.get(partition);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void startPartition(int partition) {
+        lock.lock();
+        try {
+            val scheduler = partitionFactory.apply(partition);
+            scheduler.onTaskCompleted().connect(taskCompleted::dispatch);
+            scheduler.onTaskCompletionBatch().connect(taskCompletionBatch::dispatch);
+            scheduler.start();
+            scheduler.scheduleAll(List.copyOf(partitionTasks.get(partition).values()));
+            ownedPartitions.set(partition, scheduler);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void stopPartition(int partition) {
+        lock.lock();
+        try {
+            val scheduler = ownedPartitions.set(partition, null);
+            if (null != scheduler) {
+                scheduler.stop();
+                for (val counter : Counter.values()) {
+                    retiredCounts[counter.ordinal()] += counter.reader.applyAsLong(scheduler);
+                }
+                scheduler.clear(); //Runs still underway hold on to the scheduler till they complete
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Node that a partition is assigned to, using rendezvous hashing. Every node computes the same result for the same
+     * set of live nodes.
+     */
+    static String ownerOf(int partition, final Collection<String> nodes) {
+        String owner = null;
+        var highestScore = Long.MIN_VALUE;
+        for (val node : nodes) {
+            val score = mix(node.hashCode() * 0x9E3779B97F4A7C15L + partition);
+            if (null == owner || score > highestScore || (score == highestScore && node.compareTo(owner) < 0)) {
+                owner = node;
+                highestScore = score;
+            }
+        }
+        return owner;
+    }
+
+    private static long mix(long value) {
+        var mixed = value;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xFF51AFD7ED558CCDL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xC4CEB9FE1A85EC53L;
+        mixed ^= mixed >>> 33;
+        return mixed;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Delivers completion events to listeners on dedicated consumer threads. Events are held in a bounded queue and
+ * handed over in batches of up to {@link #batchSize} events. Consumers keep draining the queue after
+ * {@link #stop()} till it is empty. Events published after that are dropped, as nothing would deliver them.
+ */
+@Slf4j
+final class KaalCompletionPipeline<T extends KaalTask<T, R>, R> {
+    private static final String CONSUMER_THREAD_NAME = "kaal-completion-";
+    private static final long IDLE_CHECK_INTERVAL = 1_000;
+
+    private final int batchSize;
+    private final KaalOverflowPolicy overflowPolicy;
+    private final BlockingQueue<KaalTaskData<T, R>> events;
+    private final List<Thread> consumers;
+    private final LongAdder droppedEvents = new LongAdder();
+    private volatile Consumer<List<KaalTaskData<T, R>>> sink;
+    private volatile Consumer<KaalTaskData<T, R>> dropListener;
+    private volatile boolean running;
+
+    KaalCompletionPipeline(int queueCapacity, int batchSize, int consumerCount, KaalOverflowPolicy overflowPolicy) {
+        if (queueCapacity <= 0 || batchSize <= 0 || consumerCount <= 0) {
+            throw new IllegalArgumentException(
+                    "Completion queue capacity, batch size and consumer count must be positive. Provided: "
+                            + queueCapacity + ", " + batchSize + ", " + consumerCount);
+        }
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.events = new ArrayBlockingQueue<>(queueCapacity);
+        this.consumers = new ArrayList<>(consumerCount);
+        for (int i = 0; i < consumerCount; i++) {
+            val consumer = new Thread(this::consume, CONSUMER_THREAD_NAME + i);
+            consumer.setDaemon(true);
+            consumers.add(consumer);
+        }
+    }
+
+    /**
+     * Start the consumer threads
+     * @param sink Called with every batch of events. Batches are never empty.
+     * @param dropListener Called for every event dropped as per the overflow policy
+     */
+    void start(final Consumer<List<KaalTaskData<T, R>>> sink, final Consumer<KaalTaskData<T, R>> dropListener) {
+        this.sink = sink;
+        this.dropListener = dropListener;
+        running = true;
+        consumers.forEach(Thread::start);
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * Queue a completion event for delivery. Handles a full queue as per the overflow policy. Once the pipeline has
+     * been stopped, the event is dropped, so that runs completing after stop never wait for space.
+     * @param taskData Data for the completed run
+     */
+    void publish(final KaalTaskData<T, R> taskData) {
+        if (!running) {
+            drop(taskData);
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    //Waits in steps, the pipeline can be stopped while the queue is full
+                    while (!events.offer(taskData, IDLE_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            drop(taskData);
+                            return;
+                        }
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(taskData);
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!events.offer(taskData)) {
+                    val evicted = events.poll();
+                    if (null != evicted) {
+                        drop(evicted);
+                    }
+                }
+            }
+            case DROP_NEWEST -> {
+                if (!events.offer(taskData)) {
+                    drop(taskData);
+                }
+            }
+        }
+    }
+
+    long droppedEventCount() {
+        return droppedEvents.sum();
+    }
+
+    private void drop(final KaalTaskData<T, R> taskData) {
+        droppedEvents.increment();
+        dropListener.accept(taskData);
+        log.debug("Completion event for {}/{} dropped", taskData.getTask().id(), taskData.getRunId());
+    }
+
+    private void consume() {
+        while (running || !events.isEmpty()) {
+            final KaalTaskData<T, R> first;
+            try {
+                first = events.poll(IDLE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info("Completion consumer interrupted, no further events will be delivered by it");
+                return;
+            }
+            if (null == first) {
+                continue;
+            }
+            val batch = new ArrayList<KaalTaskData<T, R>>(Math.min(batchSize, events.size() + 1));
+            batch.add(first);
+            events.drainTo(batch, batchSize - 1);
+            try {
+                sink.accept(batch);
+            }
+            catch (Exception e) {
+                log.error("Error delivering completion events: " + e.getMessage(), e);
+            }
+        }
+        log.debug("Completion consumer exiting");
+    }
+}
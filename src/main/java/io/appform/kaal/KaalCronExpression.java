@@ -0,0 +1,394 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A cron expression compiled into bitsets. Supports the standard five field format (minute, hour, day of month,
+ * month, day of week) and a six field format with a leading seconds field. Fields accept '*', '?', lists, ranges,
+ * steps and three letter month and day names. Macros like '@daily' and '@hourly' are supported as well.
+ * As in most cron implementations, a run is due on days matching either the day of month or the day of week field
+ * when both are restricted. Times skipped due to a daylight saving change are moved forward by the length of the gap,
+ * and times repeated due to one fire only once.
+ * Next fire times are computed with primitive arithmetic on the bitsets. The zone offset is cached till the next
+ * transition of the zone, so no objects are allocated except when a transition is crossed. Instances are thread safe.
+ * Use {@link #delayToNextRun(Date)} from {@link KaalTask#delayToNextRun(Date)}, or implement {@link KaalCronTask}.
+ */
+public final class KaalCronExpression {
+    /**
+     * Returned by {@link #nextFireTime(long)} when the expression can never fire, for example for the 30th of February
+     */
+    public static final long NEVER = -1;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final long ALL_DAYS_OF_WEEK = 0x7FL;
+    private static final int SEARCH_YEARS = 400; //The gregorian calendar repeats every 400 years
+    private static final String[] MONTH_NAMES = {
+            null, "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"
+    };
+    private static final String[] DAY_NAMES = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+    private static final Map<String, String> MACROS = Map.of(
+            "@yearly", "0 0 1 1 *",
+            "@annually", "0 0 1 1 *",
+            "@monthly", "0 0 1 * *",
+            "@weekly", "0 0 * * 0",
+            "@daily", "0 0 * * *",
+            "@midnight", "0 0 * * *",
+            "@hourly", "0 * * * *");
+
+    /**
+     * Offset of the zone, valid for epoch seconds in [from, until)
+     */
+    private record OffsetWindow(long from, long until, int offset) {
+    }
+
+    private final String expression;
+    private final ZoneId zone;
+    private final long seconds;
+    private final long minutes;
+    private final long hours;
+    private final long daysOfMonth;
+    private final long months;
+    private final long daysOfWeek;
+    private final boolean dayOfMonthOrWeek;
+    private volatile OffsetWindow offsetWindow = new OffsetWindow(0, 0, 0);
+
+    private KaalCronExpression(final String expression, final ZoneId zone) {
+        this.expression = expression;
+        this.zone = zone;
+        val trimmed = expression.trim();
+        val fields = MACROS.getOrDefault(trimmed.toLowerCase(Locale.ROOT), trimmed).split("\\s+");
+        if (fields.length != 5 && fields.length != 6) {
+            throw invalid("Expected 5 or 6 fields, found " + fields.length);
+        }
+        var index = 0;
+        this.seconds = fields.length == 6 ? parseField(fields[index++], 0, 59, null) : 1L;
+        this.minutes = parseField(fields[index++], 0, 59, null);
+        this.hours = parseField(fields[index++], 0, 23, null);
+        val dayOfMonthField = fields[index++];
+        this.daysOfMonth = parseField(dayOfMonthField, 1, 31, null);
+        this.months = parseField(fields[index++], 1, 12, MONTH_NAMES);
+        val dayOfWeekField = fields[index];
+        val daysOfWeekWithSeven = parseField(dayOfWeekField, 0, 7, DAY_NAMES);
+        this.daysOfWeek = (daysOfWeekWithSeven | (daysOfWeekWithSeven >>> 7)) & ALL_DAYS_OF_WEEK; //7 is sunday as well
+        this.dayOfMonthOrWeek = isRestricted(dayOfMonthField) && isRestricted(dayOfWeekField);
+    }
+
+    /**
+     * Compile an expression to be evaluated in the default time zone of the JVM
+     * @param expression Cron expression
+     * @return Compiled expression
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static KaalCronExpression parse(final String expression) {
+        return parse(expression, ZoneId.systemDefault());
+    }
+
+    /**
+     * Compile an expression to be evaluated in the provided time zone
+     * @param expression Cron expression
+     * @param zone Zone in which the fields of the expression are to be interpreted
+     * @return Compiled expression
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static KaalCronExpression parse(final String expression, final ZoneId zone) {
+        if (null == expression || null == zone) {
+            throw new IllegalArgumentException("Cron expression and zone must be provided");
+        }
+        return new KaalCronExpression(expression, zone);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Time at which the expression fires next
+     * @param epochMillis Reference time in epoch milliseconds
+     * @return Earliest fire time strictly after the reference time in epoch milliseconds, {@link #NEVER} if the
+     * expression can never fire
+     */
+    public long nextFireTime(long epochMillis) {
+        val reference = Math.floorDiv(epochMillis, 1000L);
+        var localStart = reference + offsetAt(reference) + 1;
+        while (true) {
+            val local = nextLocalTime(localStart);
+            if (local == NEVER) {
+                return NEVER;
+            }
+            val fireTime = toEpochSecond(local);
+            if (fireTime > reference) {
+                return fireTime * 1000L;
+            }
+            localStart = local + 1; //Local time repeated due to a daylight saving change, fired already
+        }
+    }
+
+    /**
+     * Delay from the provided time to the next fire time. Can be returned as is from
+     * {@link KaalTask#delayToNextRun(Date)}.
+     * @param currentTime Reference time
+     * @return Delay in milliseconds, or a negative number if the expression can never fire
+     */
+    public long delayToNextRun(final Date currentTime) {
+        val now = currentTime.getTime();
+        val next = nextFireTime(now);
+        return next == NEVER ? NEVER : next - now;
+    }
+
+    @Override
+    public String toString() {
+        return expression + " (" + zone + ")";
+    }
+
+    /**
+     * Earliest local time, in seconds since the local epoch, at or after the provided one that matches all fields
+     */
+    private long nextLocalTime(long localStart) {
+        //Civil date from days since epoch, see http://howardhinnant.github.io/date_algorithms.html
+        val startDays = Math.floorDiv(localStart, SECONDS_PER_DAY);
+        var secondOfDay = Math.floorMod(localStart, SECONDS_PER_DAY);
+        val shiftedDays = startDays + 719_468;
+        val era = Math.floorDiv(shiftedDays, 146_097);
+        val dayOfEra = (int) (shiftedDays - era * 146_097);
+        val yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        val dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        val shiftedMonth = (5 * dayOfYear + 2) / 153;
+        var day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        var month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        var year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+        var hour = secondOfDay / 3600;
+        var minute = secondOfDay % 3600 / 60;
+        var second = secondOfDay % 60;
+
+        val lastYear = year + SEARCH_YEARS;
+        while (year <= lastYear) {
+            if (!isSet(months, month)) {
+                val nextMonth = nextSet(months, month + 1);
+                if (nextMonth < 0) {
+                    year++;
+                    month = nextSet(months, 1);
+                }
+                else {
+                    month = nextMonth;
+                }
+                day = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            if (day > daysInMonth(year, month)) {
+                if (++month > 12) {
+                    year++;
+                    month = 1;
+                }
+                day = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            if (!dayMatches(year, month, day)) {
+                if (daysOfWeek == ALL_DAYS_OF_WEEK) { //Jump straight to the next matching day of month
+                    val nextDay = nextSet(daysOfMonth, day + 1);
+                    day = nextDay < 0 ? 32 : nextDay;
+                }
+                else {
+                    day++;
+                }
+                hour = minute = second = 0;
+                continue;
+            }
+            val nextHour = nextSet(hours, hour);
+            if (nextHour < 0) {
+                day++;
+                hour = minute = second = 0;
+                continue;
+            }
+            if (nextHour != hour) {
+                hour = nextHour;
+                minute = second = 0;
+            }
+            val nextMinute = nextSet(minutes, minute);
+            if (nextMinute < 0) {
+                hour++;
+                minute = second = 0;
+                if (hour > 23) {
+                    day++;
+                    hour = 0;
+                }
+                continue;
+            }
+            if (nextMinute != minute) {
+                minute = nextMinute;
+                second = 0;
+            }
+            val nextSecond = nextSet(seconds, second);
+            if (nextSecond < 0) {
+                minute++;
+                second = 0;
+                if (minute > 59) {
+                    hour++;
+                    minute = 0;
+                    if (hour > 23) {
+                        day++;
+                        hour = 0;
+                    }
+                }
+                continue;
+            }
+            return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + nextSecond;
+        }
+        return NEVER;
+    }
+
+    private boolean dayMatches(long year, int month, int day) {
+        val dayOfMonthMatches = isSet(daysOfMonth, day);
+        val dayOfWeek = Math.floorMod(epochDay(year, month, day) + 4, 7); //1970-01-01 was a thursday
+        val dayOfWeekMatches = isSet(daysOfWeek, dayOfWeek);
+        return dayOfMonthOrWeek
+               ? dayOfMonthMatches || dayOfWeekMatches
+               : dayOfMonthMatches && dayOfWeekMatches;
+    }
+
+    /**
+     * Convert a local time to epoch seconds. The earlier offset is used for times repeated due to a daylight saving
+     * change, and times skipped due to one are moved forward by the length of the gap.
+     */
+    private long toEpochSecond(long local) {
+        val approximate = local - offsetAt(local);
+        val offsetBefore = offsetAt(approximate - SECONDS_PER_DAY);
+        val offsetAfter = offsetAt(approximate + SECONDS_PER_DAY);
+        if (offsetBefore == offsetAfter || offsetAt(local - offsetBefore) == offsetBefore) {
+            return local - offsetBefore;
+        }
+        val afterTransition = local - offsetAfter;
+        return offsetAt(afterTransition) == offsetAfter ? afterTransition : local - offsetBefore;
+    }
+
+    private int offsetAt(long epochSecond) {
+        val window = offsetWindow;
+        if (epochSecond >= window.from() && epochSecond < window.until()) {
+            return window.offset();
+        }
+        val rules = zone.getRules();
+        val instant = Instant.ofEpochSecond(epochSecond);
+        val offset = rules.getOffset(instant).getTotalSeconds();
+        if (rules.isFixedOffset()) {
+            offsetWindow = new OffsetWindow(Long.MIN_VALUE, Long.MAX_VALUE, offset);
+            return offset;
+        }
+        val previous = rules.previousTransition(instant.plusSeconds(1));
+        val next = rules.nextTransition(instant);
+        offsetWindow = new OffsetWindow(null == previous ? Long.MIN_VALUE : previous.toEpochSecond(),
+                                        null == next ? Long.MAX_VALUE : next.toEpochSecond(),
+                                        offset);
+        return offset;
+    }
+
+    private long parseField(final String field, int min, int max, final String[] names) {
+        var bits = 0L;
+        for (val part : field.split(",", -1)) {
+            val stepIndex = part.indexOf('/');
+            val range = stepIndex < 0 ? part : part.substring(0, stepIndex);
+            val step = stepIndex < 0 ? 1 : parseNumber(part.substring(stepIndex + 1), field);
+            int start;
+            int end;
+            if (range.equals("*") || range.equals("?")) {
+                start = min;
+                end = max;
+            }
+            else {
+                val rangeIndex = range.indexOf('-');
+                start = parseValue(rangeIndex < 0 ? range : range.substring(0, rangeIndex), names, field);
+                end = rangeIndex >= 0
+                      ? parseValue(range.substring(rangeIndex + 1), names, field)
+                      : stepIndex < 0 ? start : max;
+            }
+            if (start < min || end > max || start > end || step <= 0) {
+                throw invalid("Invalid value '" + part + "' in field '" + field + "'. Allowed range: "
+                                      + min + "-" + max);
+            }
+            for (int value = start; value <= end; value += step) {
+                bits |= 1L << value;
+            }
+        }
+        return bits;
+    }
+
+    private int parseValue(final String value, final String[] names, final String field) {
+        if (null != names) {
+            for (int i = 0; i < names.length; i++) {
+                if (value.equalsIgnoreCase(names[i])) {
+                    return i;
+                }
+            }
+        }
+        return parseNumber(value, field);
+    }
+
+    private int parseNumber(final String value, final String field) {
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw invalid("Invalid value '" + value + "' in field '" + field + "'");
+        }
+    }
+
+    private IllegalArgumentException invalid(final String message) {
+        return new IllegalArgumentException("Invalid cron expression '" + expression + "': " + message);
+    }
+
+    private static boolean isRestricted(final String field) {
+        return !field.startsWith("*") && !field.startsWith("?");
+    }
+
+    private static boolean isSet(long bits, int value) {
+        return (bits & (1L << value)) != 0;
+    }
+
+    private static int nextSet(long bits, int from) {
+        if (from >= Long.SIZE) {
+            return -1;
+        }
+        val pending = bits & (-1L << from);
+        return pending == 0 ? -1 : Long.numberOfTrailingZeros(pending);
+    }
+
+    private static int daysInMonth(long year, int month) {
+        if (month == 2) {
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static long epochDay(long year, int month, int day) {
+        val shiftedYear = month <= 2 ? year - 1 : year;
+        val era = Math.floorDiv(shiftedYear, 400);
+        val yearOfEra = shiftedYear - era * 400;
+        val dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        val dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Date;
+
+/**
+ * A task that runs as per a cron expression. The next run is scheduled at the next fire time of the expression after
+ * the reference time, see {@link KaalCronExpression}. Compile the expression once and return the same instance from
+ * {@link #cronExpression()}.
+ */
+public interface KaalCronTask<T extends KaalCronTask<T, R>, R> extends KaalTask<T, R> {
+
+    /**
+     * Expression that decides when the task runs
+     * @return Compiled cron expression
+     */
+    KaalCronExpression cronExpression();
+
+    /**
+     * Delay to the next fire time of the cron expression
+     */
+    @Override
+    default long delayToNextRun(Date currentTime) {
+        return cronExpression().delayToNextRun(currentTime);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+/**
+ * Determines what the {@link KaalScheduler} does with a due run that cannot be started because the global or per-task
+ * limit on runs underway has been reached
+ */
+public enum KaalDeferralPolicy {
+    /**
+     * Keep the run pending and start it as soon as a run completes. Runs held back by the global limit stay in the
+     * queue in deadline order.
+     */
+    WAIT,
+    /**
+     * Push the run back by one polling interval and try again then
+     */
+    DELAY,
+    /**
+     * Drop the run. If the per-task limit was hit by a {@link KaalScheduleMode#FIXED_DELAY} task, the run underway
+     * schedules the next one as usual. Otherwise, the next run is scheduled counting from the time the run was dropped.
+     */
+    SKIP,
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Date;
+
+/**
+ * Derives the run id from the task id and the target execution time, in the form [task id]@[epoch milliseconds].
+ * A run scheduled again for the same task and time, for example when replaying pending runs from an external store
+ * after a restart, gets the same id, which makes such replays idempotent. Ids stay unique as long as a task does not
+ * have two runs with the same target execution time. Use with {@link KaalJitterPolicy#hashed(long)} rather than
+ * {@link KaalJitterPolicy#random(long)}, as the target time includes jitter. Nothing is shared between threads.
+ */
+public class KaalDeterministicTaskRunIdGenerator<T extends KaalTask<T, R>, R>
+        implements KaalTaskRunIdGenerator<T, R> {
+    private static final char SEPARATOR = '@';
+
+    @Override
+    public String generateId(T task, Date executionTime) {
+        return generateId(task, executionTime.getTime());
+    }
+
+    @Override
+    public String generateId(T task, long executionTime) {
+        return task.id() + SEPARATOR + executionTime;
+    }
+}
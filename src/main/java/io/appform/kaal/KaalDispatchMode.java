@@ -0,0 +1,32 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+/**
+ * Determines how the {@link KaalScheduler} looks for runs that are due for execution
+ */
+public enum KaalDispatchMode {
+    /**
+     * Check the queue at a fixed polling interval. Runs can be delayed by up to one polling interval and delays lower
+     * than the polling interval are raised to it.
+     */
+    POLLING,
+    /**
+     * Park the dispatcher thread till the earliest pending deadline. The thread is woken up early when a run with an
+     * earlier deadline is scheduled. There are no idle wakeups and runs are dispatched within a millisecond of their
+     * target time.
+     */
+    DEADLINE,
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.function.Predicate;
+
+/**
+ * Decides the order in which due runs are handed over to the executor when dispatch is limited, either by the limit on
+ * runs underway set using {@link KaalSchedulerBuilder#withMaxInFlight(int)} or by group quotas set using
+ * {@link KaalSchedulerBuilder#withGroupQuota(String, int)}. Due runs are moved from the task queue to the policy, and
+ * the policy picks the next one to dispatch whenever there is capacity. Runs are grouped as per
+ * {@link KaalTask#group()} or the group extractor set on the builder. Runs of tasks without a group are in
+ * {@link #DEFAULT_GROUP}.
+ * Implementations need not be thread safe, {@link KaalScheduler} serialises all access to the policy.
+ * {@link KaalEdfDispatchPolicy} and {@link KaalWeightedFairDispatchPolicy} are provided.
+ */
+public interface KaalDispatchPolicy<T extends KaalTask<T, R>, R> {
+    /**
+     * Group for runs of tasks that do not belong to any group
+     */
+    String DEFAULT_GROUP = "";
+
+    /**
+     * Add a due run
+     * @param group Group the run belongs to
+     * @param taskData Data for the run
+     */
+    void add(final String group, final KaalTaskData<T, R> taskData);
+
+    /**
+     * Remove and return the run to be dispatched next
+     * @param eligible Returns false for groups that are at their quota. Runs of such groups must not be returned.
+     * @return Next run, null if there is no run in an eligible group
+     */
+    KaalTaskData<T, R> poll(final Predicate<String> eligible);
+
+    /**
+     * Earliest target execution time among runs of eligible groups
+     * @param eligible Returns false for groups that are at their quota
+     * @return Time in epoch milliseconds, or {@link Long#MAX_VALUE} if there is no run in an eligible group
+     */
+    long nextDueTime(final Predicate<String> eligible);
+
+    /**
+     * Remove a run
+     * @param group Group the run belongs to
+     * @param taskData Data for the run
+     * @return True if the run was present, false otherwise
+     */
+    boolean remove(final String group, final KaalTaskData<T, R> taskData);
+
+    /**
+     * Number of runs held
+     * @return Count of runs waiting to be dispatched
+     */
+    int size();
+
+    /**
+     * Remove all runs
+     */
+    void clear();
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A {@link KaalTaskQueue} that puts a {@link KaalDispatchPolicy} between the queue holding pending runs and the
+ * dispatcher. Due runs are moved to the policy when polled, and the policy decides which one goes out next. Also keeps
+ * track of runs underway per group to enforce group quotas. Not thread safe, {@link KaalScheduler} serialises access.
+ */
+final class KaalDispatchQueue<T extends KaalTask<T, R>, R> implements KaalTaskQueue<T, R> {
+    private final KaalTaskQueue<T, R> pending;
+    private final KaalDispatchPolicy<T, R> policy;
+    private final Function<T, String> groupExtractor;
+    private final Map<String, Integer> quotas;
+    private final Map<String, Integer> inFlight = new HashMap<>();
+    private final Predicate<String> eligible = this::hasCapacity;
+
+    KaalDispatchQueue(
+            final KaalTaskQueue<T, R> pending,
+            final KaalDispatchPolicy<T, R> policy,
+            final Function<T, String> groupExtractor,
+            final Map<String, Integer> quotas) {
+        this.pending = pending;
+        this.policy = policy;
+        this.groupExtractor = groupExtractor;
+        this.quotas = Map.copyOf(quotas);
+    }
+
+    @Override
+    public void put(KaalTaskData<T, R> taskData) {
+        pending.put(taskData);
+    }
+
+    @Override
+    public void putAll(Collection<KaalTaskData<T, R>> taskData) {
+        pending.putAll(taskData);
+    }
+
+    @Override
+    public KaalTaskData<T, R> pollDue(long currentTime) {
+        KaalTaskData<T, R> due;
+        while (null != (due = pending.pollDue(currentTime))) {
+            policy.add(groupOf(due.getTask()), due);
+        }
+        return policy.poll(eligible);
+    }
+
+    @Override
+    public long nextDueTime() {
+        return Math.min(pending.nextDueTime(), policy.nextDueTime(eligible));
+    }
+
+    /**
+     * Unlike {@link #nextDueTime()}, runs of groups at their quota are considered as well
+     */
+    @Override
+    public long earliestDeadline() {
+        return Math.min(pending.earliestDeadline(), policy.nextDueTime(group -> true));
+    }
+
+    @Override
+    public boolean remove(KaalTaskData<T, R> taskData) {
+        return pending.remove(taskData) || policy.remove(groupOf(taskData.getTask()), taskData);
+    }
+
+    @Override
+    public int size() {
+        return pending.size() + policy.size();
+    }
+
+    @Override
+    public void clear() {
+        pending.clear();
+        policy.clear();
+    }
+
+    /**
+     * Record the start of a run, to be counted against the quota of its group
+     */
+    void runStarted(final T task) {
+        if (!quotas.isEmpty()) {
+            inFlight.merge(groupOf(task), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Record the end of a run
+     * @return True if the group of the task has a quota, and can therefore have runs waiting for this one to finish
+     */
+    boolean runFinished(final T task) {
+        if (quotas.isEmpty()) {
+            return false;
+        }
+        val group = groupOf(task);
+        inFlight.computeIfPresent(group, (name, count) -> count > 1 ? count - 1 : null);
+        return quotas.containsKey(group);
+    }
+
+    private boolean hasCapacity(final String group) {
+        val quota = quotas.get(group);
+        return null == quota || inFlight.getOrDefault(group, 0) < quota;
+    }
+
+    private String groupOf(final T task) {
+        val group = groupExtractor.apply(task);
+        return null == group ? KaalDispatchPolicy.DEFAULT_GROUP : group;
+    }
+}
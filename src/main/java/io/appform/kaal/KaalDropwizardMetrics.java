@@ -0,0 +1,191 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import lombok.val;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Exports scheduler metrics to a Dropwizard {@link MetricRegistry}. Needs io.dropwizard.metrics:metrics-core on the
+ * classpath. The following metrics are registered under the provided prefix:
+ * - Gauges provided by the scheduler, for example prefix.queue.size
+ * - prefix.lag - Histogram of the time between target and actual start of runs in milliseconds
+ * - prefix.execution - Timer for run execution
+ * - prefix.misfire.lateness - Histogram of how late misfired runs were found to be, in milliseconds
+ * - prefix.failures, prefix.deferred, prefix.skipped, prefix.rate.limited, prefix.misfired, prefix.timeouts,
+ * prefix.backed.off, prefix.circuit.held, prefix.completions.dropped - Meters
+ * If per-task metrics are enabled, lag, execution and failures are also tracked under prefix.tasks.[task id], along
+ * with the gauges prefix.tasks.[task id].pending and prefix.tasks.[task id].in_flight while the task is active.
+ * Enable this only if the number of distinct task ids is small.
+ */
+public class KaalDropwizardMetrics implements KaalMetrics {
+    private final MetricRegistry registry;
+    private final String prefix;
+    private final boolean perTask;
+    private final RunMetrics overall;
+    private final Meter deferred;
+    private final Meter skipped;
+    private final Meter rateLimited;
+    private final Meter misfired;
+    private final Histogram misfireLateness;
+    private final Meter timeouts;
+    private final Meter backedOff;
+    private final Meter circuitHeld;
+    private final Meter completionsDropped;
+    private final Map<String, RunMetrics> taskMetrics = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> taskGauges = new ConcurrentHashMap<>();
+
+    private static final class RunMetrics {
+        private final Histogram lag;
+        private final Timer execution;
+        private final Meter failures;
+
+        private RunMetrics(MetricRegistry registry, String prefix) {
+            this.lag = registry.histogram(MetricRegistry.name(prefix, "lag"));
+            this.execution = registry.timer(MetricRegistry.name(prefix, "execution"));
+            this.failures = registry.meter(MetricRegistry.name(prefix, "failures"));
+        }
+    }
+
+    public KaalDropwizardMetrics(MetricRegistry registry, String prefix) {
+        this(registry, prefix, false);
+    }
+
+    public KaalDropwizardMetrics(MetricRegistry registry, String prefix, boolean perTask) {
+        this.registry = registry;
+        this.prefix = prefix;
+        this.perTask = perTask;
+        this.overall = new RunMetrics(registry, prefix);
+        this.deferred = registry.meter(MetricRegistry.name(prefix, "deferred"));
+        this.skipped = registry.meter(MetricRegistry.name(prefix, "skipped"));
+        this.rateLimited = registry.meter(MetricRegistry.name(prefix, "rate", "limited"));
+        this.misfired = registry.meter(MetricRegistry.name(prefix, "misfired"));
+        this.misfireLateness = registry.histogram(MetricRegistry.name(prefix, "misfire", "lateness"));
+        this.timeouts = registry.meter(MetricRegistry.name(prefix, "timeouts"));
+        this.backedOff = registry.meter(MetricRegistry.name(prefix, "backed", "off"));
+        this.circuitHeld = registry.meter(MetricRegistry.name(prefix, "circuit", "held"));
+        this.completionsDropped = registry.meter(MetricRegistry.name(prefix, "completions", "dropped"));
+    }
+
+    @Override
+    public void registerGauge(String name, LongSupplier value) {
+        val gaugeName = MetricRegistry.name(prefix, name);
+        registry.remove(gaugeName);
+        registry.register(gaugeName, (Gauge<Long>) value::getAsLong);
+    }
+
+    @Override
+    public void unregisterGauge(String name) {
+        registry.remove(MetricRegistry.name(prefix, name));
+    }
+
+    @Override
+    public void registerTaskGauge(String taskId, String name, LongSupplier value) {
+        if (!perTask) {
+            return;
+        }
+        val gaugeName = MetricRegistry.name(prefix, "tasks", taskId, name);
+        taskGauges.computeIfAbsent(taskId, id -> ConcurrentHashMap.newKeySet()).add(gaugeName);
+        registry.remove(gaugeName);
+        registry.register(gaugeName, (Gauge<Long>) value::getAsLong);
+    }
+
+    @Override
+    public void unregisterTaskGauges(String taskId) {
+        val gaugeNames = taskGauges.remove(taskId);
+        if (null != gaugeNames) {
+            gaugeNames.forEach(registry::remove);
+        }
+    }
+
+    @Override
+    public void runStarted(String taskId, long lag) {
+        overall.lag.update(lag);
+        if (perTask) {
+            forTask(taskId).lag.update(lag);
+        }
+    }
+
+    @Override
+    public void runCompleted(String taskId, long executionTime, boolean failed) {
+        record(overall, executionTime, failed);
+        if (perTask) {
+            record(forTask(taskId), executionTime, failed);
+        }
+    }
+
+    @Override
+    public void runDeferred(String taskId) {
+        deferred.mark();
+    }
+
+    @Override
+    public void runSkipped(String taskId) {
+        skipped.mark();
+    }
+
+    @Override
+    public void runRateLimited(String taskId) {
+        rateLimited.mark();
+    }
+
+    @Override
+    public void runMisfired(String taskId, long lateness) {
+        misfired.mark();
+        misfireLateness.update(lateness);
+    }
+
+    @Override
+    public void runTimedOut(String taskId) {
+        timeouts.mark();
+    }
+
+    @Override
+    public void runBackedOff(String taskId) {
+        backedOff.mark();
+    }
+
+    @Override
+    public void runHeldByCircuit(String taskId) {
+        circuitHeld.mark();
+    }
+
+    @Override
+    public void completionDropped(String taskId) {
+        completionsDropped.mark();
+    }
+
+    private RunMetrics forTask(String taskId) {
+        return taskMetrics.computeIfAbsent(taskId,
+                                           id -> new RunMetrics(registry, MetricRegistry.name(prefix, "tasks", id)));
+    }
+
+    private static void record(RunMetrics metrics, long executionTime, boolean failed) {
+        metrics.execution.update(executionTime, TimeUnit.MILLISECONDS);
+        if (failed) {
+            metrics.failures.mark();
+        }
+    }
+}
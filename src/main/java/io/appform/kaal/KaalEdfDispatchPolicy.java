@@ -0,0 +1,54 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Map;
+
+/**
+ * Earliest deadline first dispatch. The deadline for a run is its target execution time plus the latency budget of
+ * its group, so runs of a group with a small budget overtake runs of groups with a larger one that became due a little
+ * earlier. Groups without a budget have a budget of zero. With no budgets at all, runs are dispatched in order of
+ * their target execution time, same as without a policy.
+ */
+public final class KaalEdfDispatchPolicy<T extends KaalTask<T, R>, R> extends KaalGroupedDispatchPolicy<T, R> {
+    private final Map<String, Long> latencyBudgets;
+
+    public KaalEdfDispatchPolicy() {
+        this(Map.of());
+    }
+
+    /**
+     * @param latencyBudgets Time in milliseconds runs of a group can start after their target execution time, keyed by
+     *                       group. Must not be negative.
+     */
+    public KaalEdfDispatchPolicy(final Map<String, Long> latencyBudgets) {
+        latencyBudgets.forEach((group, budget) -> {
+            if (budget < 0) {
+                throw new IllegalArgumentException("Latency budget for group " + group + " must not be negative");
+            }
+        });
+        this.latencyBudgets = Map.copyOf(latencyBudgets);
+    }
+
+    @Override
+    boolean precedes(Group<T, R> group, Group<T, R> other) {
+        return group.headTime() + group.budget < other.headTime() + other.budget;
+    }
+
+    @Override
+    void activated(Group<T, R> group) {
+        group.budget = latencyBudgets.getOrDefault(group.name, 0L);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the default executors used by the scheduler. Kaal is built for Java 17, so virtual thread support is looked
+ * up at runtime.
+ */
+@Slf4j
+final class KaalExecutors {
+    private static final MethodHandle VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+
+    private KaalExecutors() {
+    }
+
+    /**
+     * Check if the current runtime provides virtual threads
+     * @return True if running on Java 21 or later
+     */
+    static boolean virtualThreadsSupported() {
+        return null != VIRTUAL_THREAD_EXECUTOR_FACTORY;
+    }
+
+    /**
+     * Executor that starts a new virtual thread for every task. Falls back to {@link #platformThreadExecutor()} if
+     * the runtime does not support virtual threads.
+     * @return An executor service
+     */
+    static ExecutorService virtualThreadExecutor() {
+        if (null != VIRTUAL_THREAD_EXECUTOR_FACTORY) {
+            try {
+                return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invokeExact();
+            }
+            catch (Throwable t) { //Preview builds (Java 19 and 20) throw if preview features are not enabled
+                log.warn("Could not create virtual thread executor: {}", t.getMessage());
+            }
+        }
+        log.warn("Virtual threads are not available on Java {}, tasks will run on platform threads",
+                 Runtime.version().feature());
+        return platformThreadExecutor();
+    }
+
+    /**
+     * Unbounded cached pool of platform threads
+     * @return An executor service
+     */
+    static ExecutorService platformThreadExecutor() {
+        return Executors.newCachedThreadPool();
+    }
+
+    private static MethodHandle findVirtualThreadExecutorFactory() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findStatic(Executors.class,
+                                "newVirtualThreadPerTaskExecutor",
+                                MethodType.methodType(ExecutorService.class));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Base for dispatch policies that keep a separate queue for every group and choose the group to dispatch from next.
+ * Runs within a group are dispatched in order of their target execution time. A group is dropped as soon as its queue
+ * is empty, so the cost of choosing a group depends only on the number of groups with waiting runs.
+ */
+abstract class KaalGroupedDispatchPolicy<T extends KaalTask<T, R>, R> implements KaalDispatchPolicy<T, R> {
+    private static final int GROUP_QUEUE_CAPACITY = 16;
+
+    static final class Group<T extends KaalTask<T, R>, R> {
+        final String name;
+        final KaalPriorityTaskQueue<T, R> runs = new KaalPriorityTaskQueue<>(GROUP_QUEUE_CAPACITY);
+        /**
+         * Scheduling state maintained by the policy
+         */
+        long budget;
+        double stride;
+        double pass;
+
+        private Group(String name) {
+            this.name = name;
+        }
+
+        long headTime() {
+            return runs.nextDueTime();
+        }
+    }
+
+    private final Map<String, Group<T, R>> groups = new HashMap<>();
+    private int size;
+
+    @Override
+    public void add(String group, KaalTaskData<T, R> taskData) {
+        groups.computeIfAbsent(group, name -> {
+            val created = new Group<T, R>(name);
+            activated(created);
+            return created;
+        }).runs.put(taskData);
+        size++;
+    }
+
+    @Override
+    public KaalTaskData<T, R> poll(Predicate<String> eligible) {
+        Group<T, R> chosen = null;
+        for (val group : groups.values()) {
+            if (eligible.test(group.name) && (null == chosen || precedes(group, chosen))) {
+                chosen = group;
+            }
+        }
+        if (null == chosen) {
+            return null;
+        }
+        val taskData = chosen.runs.pollDue(Long.MAX_VALUE);
+        size--;
+        dispatched(chosen);
+        if (chosen.runs.size() == 0) {
+            groups.remove(chosen.name);
+        }
+        return taskData;
+    }
+
+    @Override
+    public long nextDueTime(Predicate<String> eligible) {
+        var earliest = Long.MAX_VALUE;
+        for (val group : groups.values()) {
+            if (eligible.test(group.name)) {
+                earliest = Math.min(earliest, group.headTime());
+            }
+        }
+        return earliest;
+    }
+
+    @Override
+    public boolean remove(String group, KaalTaskData<T, R> taskData) {
+        val existing = groups.get(group);
+        if (null == existing || !existing.runs.remove(taskData)) {
+            return false;
+        }
+        size--;
+        if (existing.runs.size() == 0) {
+            groups.remove(group);
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        groups.values().forEach(group -> group.runs.clear());
+        groups.clear();
+        size = 0;
+    }
+
+    /**
+     * Check if the next run from a group needs to be dispatched before the next run from another
+     */
+    abstract boolean precedes(final Group<T, R> group, final Group<T, R> other);
+
+    /**
+     * Called when a group gets its first waiting run
+     */
+    void activated(final Group<T, R> group) {
+    }
+
+    /**
+     * Called when a run from the group has been chosen for dispatch
+     */
+    void dispatched(final Group<T, R> group) {
+    }
+}
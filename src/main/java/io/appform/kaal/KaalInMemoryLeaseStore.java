@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link KaalLeaseStore} that keeps leases in memory. Can only be shared by nodes running in the same JVM, which
+ * makes it useful for tests and local development.
+ */
+public class KaalInMemoryLeaseStore implements KaalLeaseStore {
+    private record Lease(String owner, long expiry) {
+    }
+
+    private final LongSupplier clock;
+    private final Map<String, Long> nodes = new HashMap<>();
+    private final Map<Integer, Lease> leases = new HashMap<>();
+
+    public KaalInMemoryLeaseStore() {
+        this(System::currentTimeMillis);
+    }
+
+    KaalInMemoryLeaseStore(final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void heartbeat(String nodeId, long ttl) {
+        nodes.put(nodeId, clock.getAsLong() + ttl);
+    }
+
+    @Override
+    public synchronized void leave(String nodeId) {
+        nodes.remove(nodeId);
+    }
+
+    @Override
+    public synchronized Set<String> liveNodes() {
+        val now = clock.getAsLong();
+        nodes.values().removeIf(expiry -> expiry <= now);
+        return new HashSet<>(nodes.keySet());
+    }
+
+    @Override
+    public synchronized boolean tryAcquire(int partition, String nodeId, long ttl) {
+        val now = clock.getAsLong();
+        val lease = leases.get(partition);
+        if (null != lease && !lease.owner().equals(nodeId) && lease.expiry() > now) {
+            return false;
+        }
+        leases.put(partition, new Lease(nodeId, now + ttl));
+        return true;
+    }
+
+    @Override
+    public synchronized void release(int partition, String nodeId) {
+        val lease = leases.get(partition);
+        if (null != lease && lease.owner().equals(nodeId)) {
+            leases.remove(partition);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how far a run is pushed back from the time computed using {@link KaalTask#delayToNextRun(Date)}. This is
+ * used to spread out runs of tasks that would otherwise all be due at the same millisecond, for example after
+ * scheduling a large number of tasks with the same delay in one go. Jitter does not accumulate, the next run of a task
+ * is computed from the time its current run would have been due without jitter.
+ * Implementations are called on the scheduler hot path and need to be thread safe and fast.
+ */
+@FunctionalInterface
+public interface KaalJitterPolicy {
+    /**
+     * Runs are due exactly at the computed time. This is the default.
+     */
+    KaalJitterPolicy NONE = (taskId, targetTime) -> 0;
+
+    /**
+     * Jitter to be added to a run
+     * @param taskId Id for the task
+     * @param targetTime Time in epoch milliseconds at which the run would have been due without jitter
+     * @return Jitter in milliseconds. Must not be negative.
+     */
+    long jitter(String taskId, long targetTime);
+
+    /**
+     * Push every run back by a random amount within the window. Spreads load evenly, but the interval between
+     * consecutive runs of a task varies by up to the window.
+     * @param window Window in milliseconds. Must be positive.
+     * @return Policy instance
+     */
+    static KaalJitterPolicy random(long window) {
+        validateWindow(window);
+        return (taskId, targetTime) -> ThreadLocalRandom.current().nextLong(window);
+    }
+
+    /**
+     * Push every run of a task back by the same amount within the window, derived from the hash of the task id.
+     * Spreads tasks over the window while keeping the interval between runs of a task unchanged.
+     * @param window Window in milliseconds. Must be positive.
+     * @return Policy instance
+     */
+    static KaalJitterPolicy hashed(long window) {
+        validateWindow(window);
+        return (taskId, targetTime) -> {
+            var hash = taskId.hashCode() * 0x9E3779B97F4A7C15L; //Spread similar ids over the window
+            hash ^= hash >>> 32;
+            return Math.floorMod(hash, window);
+        };
+    }
+
+    private static void validateWindow(long window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Jitter window must be positive. Provided: " + window);
+        }
+    }
+}
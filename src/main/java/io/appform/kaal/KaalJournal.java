@@ -0,0 +1,502 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of schedule, complete and delete events for runs. Events are written to a memory-mapped
+ * segment file, so a crash of the process loses nothing that has been appended. A flusher thread forces appended
+ * events to disk every {@link #flushInterval} milliseconds, which bounds what can be lost if the machine goes down.
+ * All events appended in an interval share a single write to disk.
+ * Once a segment fills up, appends move to a new segment and the flusher rewrites older segments into a single one
+ * that contains only runs that were still pending.
+ * Each record is laid out as [length][crc32c][type][payload]. The length is written last, so a record that was
+ * being written during a crash is ignored on replay.
+ * Appends are not thread safe, {@link KaalScheduler} serialises them and {@link #close()} using the same lock as the
+ * queue. Events appended before {@link #open()} or after {@link #close()} are ignored.
+ */
+@Slf4j
+final class KaalJournal<T extends KaalTask<T, R>, R> implements Closeable {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String FLUSHER_THREAD_NAME = "kaal-journal-flusher";
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int COPY_BUFFER_SIZE = 1 << 20;
+
+    private static final byte SCHEDULED = 1;
+    private static final byte COMPLETED = 2;
+    private static final byte DELETED = 3;
+    private static final byte CLEARED = 4;
+
+    private final Path directory;
+    private final KaalTaskCodec<T> codec;
+    private final int segmentSize;
+    private final long flushInterval;
+    private final CRC32C checksum = new CRC32C();
+    private final List<Path> sealedSegments = new ArrayList<>();
+    private final Thread flusher;
+    private volatile boolean open;
+
+    private MappedByteBuffer active;
+    private Path activePath;
+    private long activeSequence;
+    private int position;
+    private volatile int written;
+    private int flushed;
+    private boolean compactionPending;
+
+    KaalJournal(final Path directory, final KaalTaskCodec<T> codec, int segmentSize, long flushInterval) {
+        if (segmentSize <= HEADER_SIZE || flushInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "Journal segment size and flush interval must be positive. Provided: "
+                            + segmentSize + ", " + flushInterval);
+        }
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        this.flushInterval = flushInterval;
+        this.flusher = new Thread(this::flushPeriodically, FLUSHER_THREAD_NAME);
+        this.flusher.setDaemon(true);
+    }
+
+    /**
+     * Replay the journal and start accepting events. Runs that were pending or underway when the journal was last
+     * written to are returned with the run ids and target times they were scheduled with.
+     * @return Runs that are still pending, in no particular order
+     * @throws IOException If the journal could not be read or a new segment could not be created
+     */
+    List<KaalTaskData<T, R>> open() throws IOException {
+        Files.createDirectories(directory);
+        val segments = listSegments();
+        val replay = new Replay();
+        val lastSequence = segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1));
+        for (var iterator = segments.iterator(); iterator.hasNext(); ) {
+            val segment = iterator.next();
+            if (replay.read(segment) == 0) { //Nothing was appended before the scheduler stopped
+                Files.delete(segment);
+                iterator.remove();
+            }
+        }
+        val survivors = replay.survivors();
+        val runs = new ArrayList<KaalTaskData<T, R>>(survivors.size());
+        for (val survivor : survivors) {
+            runs.add(survivor.toTaskData(codec));
+        }
+        synchronized (this) {
+            sealedSegments.addAll(segments);
+            activeSequence = lastSequence;
+            roll(0);
+            compactionPending = replay.records > survivors.size();
+        }
+        open = true;
+        flusher.start();
+        log.info("Replayed {} records from {} journal segments in {}. Pending runs: {}",
+                 replay.records, segments.size(), directory, runs.size());
+        return runs;
+    }
+
+    void scheduled(final KaalTaskData<T, R> taskData) {
+        if (!open) {
+            return;
+        }
+        val taskId = utf8(taskData.getTask().id());
+        val runId = utf8(taskData.getRunId());
+        val task = codec.encode(taskData.getTask());
+        val length = 1 + Long.BYTES + 3 * Integer.BYTES + taskId.length + runId.length + task.length;
+        val buffer = reserve(length);
+        buffer.put(SCHEDULED).putLong(taskData.getTargetExecutionTimeMillis());
+        putBytes(buffer, taskId);
+        putBytes(buffer, runId);
+        putBytes(buffer, task);
+        commit(length);
+    }
+
+    void completed(final KaalTaskData<T, R> taskData) {
+        if (!open) {
+            return;
+        }
+        val taskId = utf8(taskData.getTask().id());
+        val runId = utf8(taskData.getRunId());
+        val length = 1 + 2 * Integer.BYTES + taskId.length + runId.length;
+        val buffer = reserve(length);
+        buffer.put(COMPLETED);
+        putBytes(buffer, taskId);
+        putBytes(buffer, runId);
+        commit(length);
+    }
+
+    void deleted(final String id) {
+        if (!open) {
+            return;
+        }
+        val taskId = utf8(id);
+        val length = 1 + Integer.BYTES + taskId.length;
+        val buffer = reserve(length);
+        buffer.put(DELETED);
+        putBytes(buffer, taskId);
+        commit(length);
+    }
+
+    void cleared() {
+        if (!open) {
+            return;
+        }
+        reserve(1).put(CLEARED);
+        commit(1);
+    }
+
+    /**
+     * Stop accepting events and force everything appended so far to disk
+     */
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            flusher.join();
+            flush();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while closing journal in {}", directory);
+        }
+        log.info("Journal in {} closed", directory);
+    }
+
+    /**
+     * Force appended events to disk
+     */
+    synchronized void flush() {
+        val end = written;
+        if (end > flushed) {
+            active.force(flushed, end - flushed);
+            flushed = end;
+        }
+    }
+
+    private ByteBuffer reserve(int length) {
+        if (position + HEADER_SIZE + length > active.capacity()) {
+            try {
+                roll(HEADER_SIZE + length);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Could not create new journal segment in " + directory, e);
+            }
+        }
+        return active.position(position + HEADER_SIZE);
+    }
+
+    private void commit(int length) {
+        val start = position + HEADER_SIZE;
+        active.limit(start + length).position(start);
+        checksum.reset();
+        checksum.update(active);
+        active.limit(active.capacity());
+        active.putInt(position + Integer.BYTES, (int) checksum.getValue());
+        active.putInt(position, length); //Marks the record as complete
+        position = start + length;
+        written = position;
+    }
+
+    private synchronized void roll(int minSize) throws IOException {
+        if (null != active) {
+            active.force();
+            sealedSegments.add(activePath);
+            compactionPending = true;
+        }
+        activeSequence++;
+        activePath = directory.resolve(segmentName(activeSequence));
+        try (val channel = FileChannel.open(activePath,
+                                            StandardOpenOption.CREATE_NEW,
+                                            StandardOpenOption.READ,
+                                            StandardOpenOption.WRITE)) {
+            active = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize));
+        }
+        position = 0;
+        written = 0;
+        flushed = 0;
+        log.debug("Journal segment {} created", activePath);
+    }
+
+    private void flushPeriodically() {
+        while (open) {
+            try {
+                Thread.sleep(flushInterval);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info("Journal flusher interrupted, events will be forced to disk only on close");
+                return;
+            }
+            try {
+                flush();
+                compactIfRequired();
+            }
+            catch (Exception e) {
+                log.error("Error flushing journal: " + e.getMessage(), e);
+            }
+        }
+        log.debug("Journal flusher exiting");
+    }
+
+    /**
+     * Rewrite sealed segments into a single segment containing only runs that are still pending. The result replaces
+     * the latest of the sealed segments, so replay order is unchanged. Events in the active segment are applied after
+     * it on replay.
+     */
+    private void compactIfRequired() throws IOException {
+        final List<Path> segments;
+        synchronized (this) {
+            if (!compactionPending || sealedSegments.isEmpty()) {
+                return;
+            }
+            compactionPending = false;
+            segments = List.copyOf(sealedSegments);
+        }
+        val replay = new Replay();
+        for (val segment : segments) {
+            replay.read(segment);
+        }
+        val survivors = replay.survivors();
+        val target = segments.get(segments.size() - 1);
+        val temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (val channel = FileChannel.open(temp,
+                                            StandardOpenOption.CREATE,
+                                            StandardOpenOption.TRUNCATE_EXISTING,
+                                            StandardOpenOption.WRITE)) {
+            val buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+            for (val survivor : survivors) {
+                val record = survivor.record();
+                if (record.remaining() > buffer.remaining()) {
+                    writeFully(channel, buffer.flip());
+                    buffer.clear();
+                }
+                if (record.remaining() > buffer.capacity()) {
+                    writeFully(channel, record);
+                }
+                else {
+                    buffer.put(record);
+                }
+            }
+            writeFully(channel, buffer.flip());
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+        synchronized (this) {
+            sealedSegments.removeAll(segments);
+            sealedSegments.add(0, target);
+        }
+        log.debug("Compacted {} journal segments into {}. Pending runs: {}",
+                  segments.size(), target, survivors.size());
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (val files = Files.list(directory)) {
+            val segments = new ArrayList<Path>();
+            for (val file : (Iterable<Path>) files::iterator) {
+                val name = file.getFileName().toString();
+                if (!name.startsWith(SEGMENT_PREFIX)) {
+                    continue;
+                }
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(file);
+                }
+                else if (name.endsWith(TEMP_SUFFIX)) { //Left behind by an interrupted compaction
+                    Files.deleteIfExists(file);
+                }
+            }
+            segments.sort(Path::compareTo);
+            return segments;
+        }
+    }
+
+    private static String segmentName(long sequence) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    private static long sequenceOf(final Path segment) {
+        val name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] utf8(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(final ByteBuffer buffer, final byte[] value) {
+        buffer.putInt(value.length).put(value);
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * A run that was pending as of the point up to which the journal has been replayed. Only the run id is read upfront,
+     * everything else is read from the record when required.
+     */
+    private record PendingRun(String runId, long targetTime, ByteBuffer segment, int offset, long sequence) {
+        private static final int TASK_ID_OFFSET = HEADER_SIZE + 1 + Long.BYTES;
+
+        int length() {
+            return HEADER_SIZE + segment.getInt(offset);
+        }
+
+        String taskId() {
+            return readString(segment, offset + TASK_ID_OFFSET);
+        }
+
+        boolean belongsTo(final ByteBuffer buffer, int taskIdIndex) {
+            val index = offset + TASK_ID_OFFSET;
+            val length = Integer.BYTES + segment.getInt(index);
+            return segment.slice(index, length).equals(buffer.slice(taskIdIndex, length));
+        }
+
+        ByteBuffer record() {
+            return segment.slice(offset, length());
+        }
+
+        <T extends KaalTask<T, R>, R> KaalTaskData<T, R> toTaskData(final KaalTaskCodec<T> codec) {
+            var index = offset + TASK_ID_OFFSET;
+            index += Integer.BYTES + segment.getInt(index);
+            index += Integer.BYTES + segment.getInt(index);
+            val task = new byte[segment.getInt(index)];
+            segment.get(index + Integer.BYTES, task);
+            return new KaalTaskData<>(runId, codec.decode(task), targetTime);
+        }
+    }
+
+    /**
+     * Applies journal records in order to work out the runs that are still pending. Deletes are remembered by the
+     * sequence number at which they happened, so that a task scheduled again after a delete is not affected.
+     */
+    private static final class Replay {
+        private final Map<String, PendingRun> pending = new HashMap<>();
+        private final Map<String, Long> deletedAt = new HashMap<>();
+        private final CRC32C checksum = new CRC32C();
+        private long records;
+
+        /**
+         * Apply all valid records in a segment
+         * @return Number of records applied
+         */
+        long read(final Path segment) throws IOException {
+            final ByteBuffer buffer;
+            try (val channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            val view = buffer.duplicate();
+            val limit = buffer.limit();
+            val recordsBefore = records;
+            var offset = 0;
+            while (offset + HEADER_SIZE <= limit) {
+                val length = buffer.getInt(offset);
+                if (length == 0) { //Rest of the segment was never written to
+                    break;
+                }
+                if (length < 0 || length > limit - offset - HEADER_SIZE || !valid(buffer, view, offset, length)) {
+                    log.warn("Ignoring incomplete or corrupt journal record in {} at offset {}", segment, offset);
+                    break;
+                }
+                apply(buffer, offset);
+                offset += HEADER_SIZE + length;
+            }
+            return records - recordsBefore;
+        }
+
+        List<PendingRun> survivors() {
+            val survivors = new ArrayList<PendingRun>(pending.size());
+            for (val run : pending.values()) {
+                val deleteSequence = deletedAt.isEmpty() ? null : deletedAt.get(run.taskId());
+                if (null == deleteSequence || deleteSequence < run.sequence()) {
+                    survivors.add(run);
+                }
+            }
+            return survivors;
+        }
+
+        private boolean valid(final ByteBuffer buffer, final ByteBuffer view, int offset, int length) {
+            val start = offset + HEADER_SIZE;
+            view.limit(start + length).position(start);
+            checksum.reset();
+            checksum.update(view);
+            return (int) checksum.getValue() == buffer.getInt(offset + Integer.BYTES);
+        }
+
+        private void apply(final ByteBuffer buffer, int offset) {
+            val sequence = records++;
+            var index = offset + HEADER_SIZE;
+            val type = buffer.get(index++);
+            switch (type) {
+                case SCHEDULED -> {
+                    val targetTime = buffer.getLong(index);
+                    index += Long.BYTES;
+                    index += Integer.BYTES + buffer.getInt(index);
+                    val runId = readString(buffer, index);
+                    pending.put(runId, new PendingRun(runId, targetTime, buffer, offset, sequence));
+                }
+                case COMPLETED -> {
+                    val taskIdIndex = index;
+                    index += Integer.BYTES + buffer.getInt(index);
+                    val runId = readString(buffer, index);
+                    val run = pending.get(runId);
+                    if (null != run && run.belongsTo(buffer, taskIdIndex)) {
+                        pending.remove(runId);
+                    }
+                }
+                case DELETED -> deletedAt.put(readString(buffer, index), sequence);
+                case CLEARED -> {
+                    pending.clear();
+                    deletedAt.clear();
+                }
+                default -> log.warn("Ignoring journal record of unknown type {}", type);
+            }
+        }
+
+    }
+
+    private static String readString(final ByteBuffer buffer, int index) {
+        val bytes = new byte[buffer.getInt(index)];
+        buffer.get(index + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Set;
+
+/**
+ * Shared store used by the nodes of a {@link KaalClusteredScheduler} to keep track of live nodes and of the node
+ * holding the lease for each partition. Implementations must make lease acquisition atomic across all nodes, a
+ * partition can have at most one owner with an unexpired lease at a time. {@link KaalInMemoryLeaseStore} can be used
+ * for nodes in the same JVM, for example in tests.
+ */
+public interface KaalLeaseStore {
+
+    /**
+     * Register the node as live, or extend the time it is considered live for
+     * @param nodeId Id for the node
+     * @param ttl Time in milliseconds for which the node is to be considered live
+     */
+    void heartbeat(final String nodeId, long ttl);
+
+    /**
+     * Remove the node from the set of live nodes
+     * @param nodeId Id for the node
+     */
+    void leave(final String nodeId);
+
+    /**
+     * Nodes that have sent a heartbeat that has not expired yet
+     * @return Ids for the live nodes
+     */
+    Set<String> liveNodes();
+
+    /**
+     * Acquire the lease for a partition, or extend it if the node holds it already. Must fail if another node holds
+     * an unexpired lease for the partition.
+     * @param partition Index of the partition
+     * @param nodeId Id for the node
+     * @param ttl Time in milliseconds for which the lease is to be held
+     * @return True if the node holds the lease now
+     */
+    boolean tryAcquire(int partition, final String nodeId, long ttl);
+
+    /**
+     * Give up the lease for a partition. Does nothing if the lease is not held by the node.
+     * @param partition Index of the partition
+     * @param nodeId Id for the node
+     */
+    void release(int partition, final String nodeId);
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives metrics from the scheduler. All methods do nothing by default, implement the ones that are needed.
+ * Methods are called on the scheduler hot paths, implementations need to be thread safe and fast.
+ * {@link KaalDropwizardMetrics} exports these to a Dropwizard {@link com.codahale.metrics.MetricRegistry}.
+ */
+public interface KaalMetrics {
+    /**
+     * Used when no metrics have been configured. The scheduler skips all metrics related work for this.
+     */
+    KaalMetrics NOOP = new KaalMetrics() {
+    };
+
+    /**
+     * Called when the scheduler starts, once for every scheduler wide gauge. The supplier is thread safe and can be
+     * called till {@link #unregisterGauge(String)} is called for the gauge.
+     * @param name Name for the gauge, for example queue.size
+     * @param value Supplier for the current value
+     */
+    default void registerGauge(String name, LongSupplier value) {
+    }
+
+    /**
+     * Called when the scheduler stops, once for every gauge registered by
+     * {@link #registerGauge(String, LongSupplier)}
+     * @param name Name for the gauge
+     */
+    default void unregisterGauge(String name) {
+    }
+
+    /**
+     * Called when a task gets its first pending run, once for every per task gauge. The supplier is thread safe and
+     * can be called till {@link #unregisterTaskGauges(String)} is called for the task.
+     * @param taskId Id for the task
+     * @param name Name for the gauge, for example pending
+     * @param value Supplier for the current value
+     */
+    default void registerTaskGauge(String taskId, String name, LongSupplier value) {
+    }
+
+    /**
+     * Called when a task has no runs pending or underway any more. Gauges registered for the task should be removed.
+     * @param taskId Id for the task
+     */
+    default void unregisterTaskGauges(String taskId) {
+    }
+
+    /**
+     * Called when a run is handed over to the executor
+     * @param taskId Id for the task
+     * @param lag Time in milliseconds between the target execution time and the actual start of the run
+     */
+    default void runStarted(String taskId, long lag) {
+    }
+
+    /**
+     * Called when a run completes
+     * @param taskId Id for the task
+     * @param executionTime Time taken by the run in milliseconds
+     * @param failed True if the run threw an exception
+     */
+    default void runCompleted(String taskId, long executionTime, boolean failed) {
+    }
+
+    /**
+     * Called when a due run is deferred because a limit on runs underway has been reached
+     * @param taskId Id for the task
+     */
+    default void runDeferred(String taskId) {
+    }
+
+    /**
+     * Called when a due run is dropped because a limit on runs underway has been reached
+     * @param taskId Id for the task
+     */
+    default void runSkipped(String taskId) {
+    }
+
+    /**
+     * Called when a due run is pushed back because the rate limit for its group has been reached
+     * @param taskId Id for the task
+     */
+    default void runRateLimited(String taskId) {
+    }
+
+    /**
+     * Called when a due run is found to have missed its target execution time by more than the misfire threshold
+     * @param taskId Id for the task
+     * @param lateness Time in milliseconds between the target execution time and the time the run was found due
+     */
+    default void runMisfired(String taskId, long lateness) {
+    }
+
+    /**
+     * Called when a run is cancelled because it did not complete within its timeout
+     * @param taskId Id for the task
+     */
+    default void runTimedOut(String taskId) {
+    }
+
+    /**
+     * Called when a due run is pushed back because earlier runs of its task failed
+     * @param taskId Id for the task
+     */
+    default void runBackedOff(String taskId) {
+    }
+
+    /**
+     * Called when a due run is pushed back because the circuit for its group is open
+     * @param taskId Id for the task
+     */
+    default void runHeldByCircuit(String taskId) {
+    }
+
+    /**
+     * Called when a completion event is dropped by the completion pipeline
+     * @param taskId Id for the task
+     */
+    default void completionDropped(String taskId) {
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+/**
+ * Determines what the {@link KaalScheduler} does with a run that is dispatched more than the misfire threshold after
+ * its target execution time, for example after a long GC pause, an overload or a jump in the system clock. The
+ * threshold is set using {@link KaalSchedulerBuilder#withMisfireThreshold(long)}.
+ */
+public enum KaalMisfirePolicy {
+    /**
+     * Start the run, and keep to the schedule so that every missed run is started as well. Missed runs are started
+     * back to back, or at the rate set using {@link KaalSchedulerBuilder#withMisfireCatchUpRate(double)}.
+     */
+    FIRE_ALL,
+    /**
+     * Start the run once, standing in for all the runs that were missed. The next run is scheduled counting from the
+     * time this run was dispatched for {@link KaalScheduleMode#FIXED_RATE} tasks, and from the time it completed for
+     * {@link KaalScheduleMode#FIXED_DELAY} tasks, without compensating for the delay.
+     */
+    FIRE_ONCE,
+    /**
+     * Drop the run, and schedule the next one counting from the time the run was dropped
+     */
+    SKIP,
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+/**
+ * Determines what happens when a completion event is published to a full completion pipeline queue. Rescheduling is
+ * done before the event is published, so none of these delay the next run of the task.
+ */
+public enum KaalOverflowPolicy {
+    /**
+     * Wait for space in the queue. Holds the thread that completed the run till a consumer catches up.
+     */
+    BLOCK,
+    /**
+     * Drop the oldest event in the queue to make space for the new one
+     */
+    DROP_OLDEST,
+    /**
+     * Drop the new event
+     */
+    DROP_NEWEST,
+}
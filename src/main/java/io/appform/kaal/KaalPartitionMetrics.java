@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Adds the partition index to gauge names reported by a partition of a {@link KaalShardedScheduler}. All other
+ * metrics are passed through, so they are aggregated across partitions. A task lives in a single partition, so per
+ * task gauges are passed through as well.
+ */
+final class KaalPartitionMetrics implements KaalMetrics {
+    private final KaalMetrics delegate;
+    private final String gaugePrefix;
+
+    KaalPartitionMetrics(KaalMetrics delegate, int partition) {
+        this.delegate = delegate;
+        this.gaugePrefix = "partition." + partition + ".";
+    }
+
+    @Override
+    public void registerGauge(String name, LongSupplier value) {
+        delegate.registerGauge(gaugePrefix + name, value);
+    }
+
+    @Override
+    public void unregisterGauge(String name) {
+        delegate.unregisterGauge(gaugePrefix + name);
+    }
+
+    @Override
+    public void registerTaskGauge(String taskId, String name, LongSupplier value) {
+        delegate.registerTaskGauge(taskId, name, value);
+    }
+
+    @Override
+    public void unregisterTaskGauges(String taskId) {
+        delegate.unregisterTaskGauges(taskId);
+    }
+
+    @Override
+    public void runStarted(String taskId, long lag) {
+        delegate.runStarted(taskId, lag);
+    }
+
+    @Override
+    public void runCompleted(String taskId, long executionTime, boolean failed) {
+        delegate.runCompleted(taskId, executionTime, failed);
+    }
+
+    @Override
+    public void runDeferred(String taskId) {
+        delegate.runDeferred(taskId);
+    }
+
+    @Override
+    public void runSkipped(String taskId) {
+        delegate.runSkipped(taskId);
+    }
+
+    @Override
+    public void runRateLimited(String taskId) {
+        delegate.runRateLimited(taskId);
+    }
+
+    @Override
+    public void runMisfired(String taskId, long lateness) {
+        delegate.runMisfired(taskId, lateness);
+    }
+
+    @Override
+    public void runTimedOut(String taskId) {
+        delegate.runTimedOut(taskId);
+    }
+
+    @Override
+    public void runBackedOff(String taskId) {
+        delegate.runBackedOff(taskId);
+    }
+
+    @Override
+    public void runHeldByCircuit(String taskId) {
+        delegate.runHeldByCircuit(taskId);
+    }
+
+    @Override
+    public void completionDropped(String taskId) {
+        delegate.completionDropped(taskId);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A {@link KaalTaskQueue} backed by a binary heap. Insertion, expiry and removal are O(log n). Every entry keeps track
+ * of its position in the heap, so removal does not need to search for the run. This is the default queue used
+ * by {@link KaalScheduler}.
+ */
+public class KaalPriorityTaskQueue<T extends KaalTask<T, R>, R> implements KaalTaskQueue<T, R> {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final class Entry<T extends KaalTask<T, R>, R> {
+        private final KaalTaskData<T, R> taskData;
+        private final long deadline;
+        private int index;
+
+        private Entry(KaalTaskData<T, R> taskData, long deadline, int index) {
+            this.taskData = taskData;
+            this.deadline = deadline;
+            this.index = index;
+        }
+    }
+
+    private Entry<T, R>[] heap;
+    private int size;
+
+    public KaalPriorityTaskQueue() {
+        this(INITIAL_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    KaalPriorityTaskQueue(int initialCapacity) {
+        this.heap = (Entry<T, R>[]) new Entry<?, ?>[Math.max(2, initialCapacity)];
+    }
+
+    @Override
+    public void put(KaalTaskData<T, R> taskData) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size + (size >> 1));
+        }
+        val entry = new Entry<>(taskData, taskData.getTargetExecutionTimeMillis(), size);
+        heap[size++] = entry;
+        siftUp(entry);
+        taskData.setQueueHandle(entry);
+    }
+
+    /**
+     * Adds the runs to the end of the heap and restores heap order in O(n) when the batch is at least as large as
+     * the existing heap. Smaller batches are inserted one by one.
+     * @param taskData Data for the runs to be queued
+     */
+    @Override
+    public void putAll(Collection<KaalTaskData<T, R>> taskData) {
+        if (taskData.size() < size) {
+            taskData.forEach(this::put);
+            return;
+        }
+        val required = size + taskData.size();
+        if (required > heap.length) {
+            heap = Arrays.copyOf(heap, required);
+        }
+        for (val run : taskData) {
+            val entry = new Entry<>(run, run.getTargetExecutionTimeMillis(), size);
+            heap[size++] = entry;
+            run.setQueueHandle(entry);
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(heap[i]);
+        }
+    }
+
+    @Override
+    public KaalTaskData<T, R> pollDue(long currentTime) {
+        if (size == 0 || heap[0].deadline > currentTime) {
+            return null;
+        }
+        return removeAt(0);
+    }
+
+    @Override
+    public long nextDueTime() {
+        return size == 0 ? Long.MAX_VALUE : heap[0].deadline;
+    }
+
+    @Override
+    public boolean remove(KaalTaskData<T, R> taskData) {
+        if (!(taskData.getQueueHandle() instanceof Entry<?, ?> entry)
+                || entry.index < 0
+                || entry.index >= size
+                || heap[entry.index] != entry) {
+            return false;
+        }
+        removeAt(entry.index);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            heap[i].index = -1;
+            heap[i].taskData.setQueueHandle(null);
+            heap[i] = null;
+        }
+        size = 0;
+    }
+
+    private KaalTaskData<T, R> removeAt(int index) {
+        val removed = heap[index];
+        val last = heap[--size];
+        heap[size] = null;
+        if (index != size) {
+            heap[index] = last;
+            last.index = index;
+            siftDown(last);
+            if (heap[index] == last) {
+                siftUp(last);
+            }
+        }
+        removed.index = -1;
+        removed.taskData.setQueueHandle(null);
+        return removed.taskData;
+    }
+
+    private void siftUp(final Entry<T, R> entry) {
+        var index = entry.index;
+        while (index > 0) {
+            val parentIndex = (index - 1) >>> 1;
+            val parent = heap[parentIndex];
+            if (parent.deadline <= entry.deadline) {
+                break;
+            }
+            heap[index] = parent;
+            parent.index = index;
+            index = parentIndex;
+        }
+        heap[index] = entry;
+        entry.index = index;
+    }
+
+    private void siftDown(final Entry<T, R> entry) {
+        var index = entry.index;
+        val half = size >>> 1;
+        while (index < half) {
+            var childIndex = (index << 1) + 1;
+            var child = heap[childIndex];
+            val rightIndex = childIndex + 1;
+            if (rightIndex < size && heap[rightIndex].deadline < child.deadline) {
+                childIndex = rightIndex;
+                child = heap[childIndex];
+            }
+            if (entry.deadline <= child.deadline) {
+                break;
+            }
+            heap[index] = child;
+            child.index = index;
+            index = childIndex;
+        }
+        heap[index] = entry;
+        entry.index = index;
+    }
+}
@@ -33,4 +33,9 @@ public class KaalRandomTaskRunIdGenerator<T extends KaalTask<T, R>, R> implement
     public String generateId(T task, Date executionTime) {
         return UUID.randomUUID().toString();
     }
+
+    @Override
+    public String generateId(T task, long executionTime) {
+        return UUID.randomUUID().toString();
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Token bucket rate limits on dispatch of runs, one bucket per task group. Runs over the limit reserve the earliest
+ * free permit and get pushed back to that time, so a backlog of runs drains at the configured rate without being
+ * polled again and again. A single instance is shared by all partitions of a {@link KaalShardedScheduler}, so limits
+ * apply across partitions. Thread safe.
+ */
+final class KaalRateLimiter<T extends KaalTask<T, R>, R> {
+
+    /**
+     * Rate and burst size for a group
+     */
+    record Limit(double runsPerSecond, int burst) {
+        Limit {
+            if (runsPerSecond <= 0 || burst <= 0) {
+                throw new IllegalArgumentException("Rate and burst must be positive. Provided rate: " + runsPerSecond
+                                                           + " burst: " + burst);
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private final double interval;
+        private final int burst;
+        private double storedPermits;
+        private double nextFreeTime;
+
+        private Bucket(final Limit limit) {
+            this.interval = 1_000.0 / limit.runsPerSecond();
+            this.burst = limit.burst();
+            this.storedPermits = burst;
+        }
+
+        synchronized long reserve(long currentTime) {
+            if (currentTime > nextFreeTime) {
+                storedPermits = Math.min(burst, storedPermits + (currentTime - nextFreeTime) / interval);
+                nextFreeTime = currentTime;
+            }
+            val spent = Math.min(1.0, storedPermits);
+            storedPermits -= spent;
+            nextFreeTime += (1.0 - spent) * interval; //Time at which the rest of the permit accrues
+            return (long) Math.ceil(nextFreeTime);
+        }
+    }
+
+    private final Function<T, String> groupExtractor;
+    private final Map<String, Bucket> buckets;
+
+    KaalRateLimiter(final Function<T, String> groupExtractor, final Map<String, Limit> limits) {
+        this.groupExtractor = groupExtractor;
+        this.buckets = limits.entrySet()
+                .stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> new Bucket(entry.getValue())));
+    }
+
+    /**
+     * Take a permit for a run of the task
+     * @param task Task for the run
+     * @param currentTime Current time in epoch milliseconds
+     * @return Time at which the run is permitted to start. At or before current time if the run can start right away.
+     */
+    long reserve(final T task, long currentTime) {
+        val group = groupExtractor.apply(task);
+        if (null == group) {
+            return currentTime;
+        }
+        val bucket = buckets.get(group);
+        return null == bucket ? currentTime : bucket.reserve(currentTime);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Tracks deadlines for runs underway on a single {@link KaalTimingWheel}, so that a run with a timeout costs one wheel
+ * entry rather than a timer of its own. A single thread waits for the earliest deadline and calls the expiry handler
+ * for runs that reach it. The thread is started when the first deadline is registered and stops once all schedulers
+ * using this have stopped. A single instance is shared by all partitions of a {@link KaalShardedScheduler}.
+ * Thread safe.
+ */
+@Slf4j
+final class KaalRunTimeouts {
+    private static final String THREAD_NAME = "kaal-run-timeouts";
+
+    /**
+     * Deadline for a run. Keeps track of what needs to be cancelled once the deadline passes.
+     */
+    static final class Timeout {
+        private final Consumer<Timeout> expiryHandler;
+        private KaalTimingWheel.Node<Timeout> node;
+        private Thread worker;
+        private CompletionStage<?> stage;
+        private boolean expired;
+
+        private Timeout(Consumer<Timeout> expiryHandler) {
+            this.expiryHandler = expiryHandler;
+        }
+
+        /**
+         * Mark the thread executing the run, to be interrupted if the deadline passes while the run is underway. The
+         * thread is interrupted right away if the deadline passed before the run got to it.
+         */
+        synchronized void runningOn(final Thread thread) {
+            this.worker = thread;
+            if (expired) {
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Called by the thread executing the run once the run returns. Clears any interrupt raised for the run, so it
+         * does not leak into whatever the thread does next.
+         */
+        synchronized void finishedRunning() {
+            if (null != worker && expired) {
+                Thread.interrupted();
+            }
+            this.worker = null;
+        }
+
+        /**
+         * Mark the stage returned by an asynchronous run, to be cancelled if the deadline passes before it completes
+         */
+        synchronized void completesWith(final CompletionStage<?> stage) {
+            this.stage = stage;
+            if (expired) {
+                cancelStage();
+            }
+        }
+
+        /**
+         * Interrupt the thread running the run, or cancel the stage of an asynchronous run
+         */
+        synchronized void cancel() {
+            expired = true;
+            if (null != worker) {
+                worker.interrupt();
+            }
+            if (null != stage) {
+                cancelStage();
+            }
+        }
+
+        private void cancelStage() {
+            try {
+                stage.toCompletableFuture().cancel(true);
+            }
+            catch (UnsupportedOperationException e) {
+                log.debug("Completion stage of type {} cannot be cancelled", stage.getClass().getSimpleName());
+            }
+        }
+    }
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition deadlineChanged = lock.newCondition();
+    private final KaalTimingWheel<Timeout> wheel = new KaalTimingWheel<>(System.currentTimeMillis());
+    private Thread expiryThread;
+    private int users;
+
+    /**
+     * Called by a scheduler when it starts
+     */
+    void start() {
+        lock.lock();
+        try {
+            users++;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by a scheduler when it stops. The expiry thread is stopped and pending deadlines are dropped once all
+     * schedulers sharing this have stopped.
+     */
+    void stop() {
+        lock.lock();
+        try {
+            if (users == 0 || --users > 0) {
+                return;
+            }
+            expiryThread = null;
+            wheel.clear();
+            deadlineChanged.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start tracking a deadline
+     * @param deadline Time in epoch milliseconds at which the run times out
+     * @param expiryHandler Called on the expiry thread once the deadline passes, unless unregistered before that
+     * @return Handle for the deadline, or null if no scheduler sharing this is running
+     */
+    Timeout register(long deadline, final Consumer<Timeout> expiryHandler) {
+        val timeout = new Timeout(expiryHandler);
+        lock.lock();
+        try {
+            if (users == 0) {
+                return null;
+            }
+            if (null == expiryThread) {
+                expiryThread = new Thread(this::expireTimeouts, THREAD_NAME);
+                expiryThread.setDaemon(true);
+                expiryThread.start();
+            }
+            val earlierThanPending = deadline < wheel.nextEventTime();
+            timeout.node = wheel.add(timeout, deadline);
+            if (earlierThanPending) {
+                deadlineChanged.signal();
+            }
+            return timeout;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop tracking a deadline, once the run completes in time
+     * @param timeout Handle returned by {@link #register(long, Consumer)}
+     */
+    void unregister(final Timeout timeout) {
+        lock.lock();
+        try {
+            wheel.remove(timeout.node);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of deadlines being tracked
+     */
+    int size() {
+        lock.lock();
+        try {
+            return wheel.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void expireTimeouts() {
+        val thread = Thread.currentThread();
+        val expired = new ArrayList<Timeout>();
+        while (true) {
+            lock.lock();
+            try {
+                while (expired.isEmpty()) {
+                    if (expiryThread != thread) {
+                        log.debug("Run timeout thread exiting");
+                        return;
+                    }
+                    val now = System.currentTimeMillis();
+                    for (var node = wheel.pollExpired(now); null != node; node = wheel.pollExpired(now)) {
+                        expired.add(node.item());
+                    }
+                    if (expired.isEmpty()) {
+                        deadlineChanged.await(Math.max(1, wheel.nextEventTime() - now), TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info("Run timeout thread interrupted, timeouts will not be enforced");
+                return;
+            }
+            finally {
+                lock.unlock();
+            }
+            for (val timeout : expired) {
+                try {
+                    timeout.expiryHandler.accept(timeout);
+                }
+                catch (Exception e) {
+                    log.error("Error handling run timeout: " + e.getMessage(), e);
+                }
+            }
+            expired.clear();
+        }
+    }
+}
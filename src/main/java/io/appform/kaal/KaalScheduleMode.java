@@ -0,0 +1,34 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+/**
+ * Determines when the next run for a task is scheduled
+ */
+public enum KaalScheduleMode {
+    /**
+     * Schedule the next run once the current run completes. The delay is counted from the target time of the
+     * completed run, so time taken by the run is compensated for, but a run never starts before the previous one has
+     * completed.
+     */
+    FIXED_DELAY,
+    /**
+     * Schedule the next run as soon as the current run is started, with the delay counted from the target time of the
+     * current run. Runs keep to the cadence even if a run takes longer than the delay, as long as the number of runs
+     * underway stays within {@link KaalTask#maxConcurrentRuns()}. If the task does not set a limit and there is no
+     * per-task limit on the scheduler, runs do not overlap. Runs that fall behind are started as soon as possible.
+     */
+    FIXED_RATE,
+}
@@ -16,71 +16,181 @@ package io.appform.kaal;
 
 import io.appform.signals.signals.ConsumingSyncSignal;
 import io.appform.signals.signals.ScheduledSignal;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 /**
  * A scheduler that triggers {@link KaalTask}s at periodic intervals. One a run is completed, a signal is triggered
  * which the calling system can connect to, in order to do further processing on the results if necessary.
  * A task is identified by a task ID and a particular run of the task is identified by RunID. The RunID for a run is
  * generated by making a call to {@link KaalTaskRunIdGenerator#generateId(KaalTask, Date)}.
- * The delay to next execution is calculated by calling {@link KaalTask#delayToNextRun(Date)}.
+ * The delay to next execution is calculated by calling {@link KaalTask#delayToNextRun(Date)}. The next run is
+ * scheduled when the current run completes or when it starts, depending on {@link KaalTask#scheduleMode()}.
  * Once a run is completed, whether a subsequent run will be scheduled or not is determined by making a call to
  * {@link KaalTaskStopStrategy#scheduleNext(KaalTaskData)}.
  * NOTE:
- * - Tasks might be delayed by {@link KaalScheduler#pollingInterval} milliseconds.
+ * - In {@link KaalDispatchMode#POLLING} mode, tasks might be delayed by {@link KaalScheduler#pollingInterval}
+ * milliseconds.
  * - Kaal tried to adjust for drift while scheduling next run, however if run time is close to the run interval,
  * behaviour might become unpredictable.
  * - Task execution will stop if delay() returns a negative value
- * - By default an unlimited cached thread pool is used to run tasks. The recommendation is to keep it that way.
+ * - By default an unlimited cached thread pool is used to run tasks. The recommendation is to keep it that way and
+ * limit the number of runs underway using {@link KaalSchedulerBuilder#withMaxInFlight(int)} if required.
  */
 @Slf4j
 public final class KaalScheduler<T extends KaalTask<T, R>, R> {
 
     private static final String HANDLER_NAME = "TASK_POLLER";
+    static final String DISPATCHER_THREAD_NAME = "kaal-dispatcher";
 
     private final long pollingInterval;
+    private final KaalDispatchMode dispatchMode;
     private final KaalTaskRunIdGenerator<T, R> taskIdGenerator;
     private final KaalTaskStopStrategy<T, R> stopStrategy;
     private final ExecutorService executorService;
+    @Getter(AccessLevel.PACKAGE)
+    private final KaalAdmissionControl admissionControl;
+    private final Runnable capacityListener = this::wakeDispatcher;
+    private final List<String> gaugeNames = new ArrayList<>();
 
-    private final PriorityBlockingQueue<KaalTaskData<T, R>> tasks
-            = new PriorityBlockingQueue<>(1024,
-                                          Comparator.comparing(e -> {
-                                              val nextTime = e.getTargetExecutionTime().getTime();
-                                              log.debug("Execution time: {}", nextTime);
-                                              return nextTime;
-                                          }));
+    private final KaalTaskQueue<T, R> tasks;
+    private final Lock tasksLock = new ReentrantLock();
+    private final Condition dueTimeChanged = tasksLock.newCondition();
     private final ScheduledSignal signalGenerator;
+    private final Thread dispatcher;
+    private volatile boolean running;
 
-    private final Set<String> deleted = new ConcurrentSkipListSet<>();
+    private final Map<String, KaalTaskState<T, R>> taskStates = new HashMap<>();
+    private final LongAdder deferredRuns = new LongAdder();
+    private final LongAdder skippedRuns = new LongAdder();
+    private final LongAdder rateLimitedRuns = new LongAdder();
+    private final LongAdder misfiredRuns = new LongAdder();
+    private final LongAdder timedOutRuns = new LongAdder();
+    private final LongAdder backedOffRuns = new LongAdder();
+    private final LongAdder circuitHeldRuns = new LongAdder();
 
     private final ConsumingSyncSignal<KaalTaskData<T, R>> taskCompleted = new ConsumingSyncSignal<>();
+    private final ConsumingSyncSignal<List<KaalTaskData<T, R>>> taskCompletionBatch = new ConsumingSyncSignal<>();
+    private final KaalCompletionPipeline<T, R> completionPipeline;
+    private final KaalMetrics metrics;
+    private final boolean metricsEnabled;
+    private final KaalTaskCodec<T> taskCodec;
+    private final KaalJournal<T, R> journal;
+    private final KaalJitterPolicy jitterPolicy;
+    private final boolean jitterEnabled;
+    private final int maxDispatchesPerTick;
+    private final KaalRateLimiter<T, R> rateLimiter;
+    private final KaalDispatchQueue<T, R> dispatchQueue;
+    private final KaalMisfirePolicy misfirePolicy;
+    private final long misfireThreshold;
+    /**
+     * Milliseconds between misfired runs started under {@link KaalMisfirePolicy#FIRE_ALL}, zero if not limited
+     */
+    private final double catchUpInterval;
+    private final long runTimeout;
+    private final KaalRunTimeouts runTimeouts;
+    private final KaalBackoffPolicy backoffPolicy;
+    private final boolean backoffEnabled;
+    private final KaalCircuitBreaker<T, R> circuitBreaker;
+    private int runsInFlight;
+    private int runsWaiting;
+    private long throttledUntil;
+    private double nextCatchUpTime;
 
     KaalScheduler(
             long pollingInterval,
+            KaalDispatchMode dispatchMode,
+            String dispatcherName,
             KaalTaskRunIdGenerator<T, R> taskIdGenerator,
             KaalTaskStopStrategy<T, R> stopStrategy,
-            ExecutorService executorService) {
+            ExecutorService executorService,
+            KaalAdmissionControl admissionControl,
+            KaalCompletionPipeline<T, R> completionPipeline,
+            KaalMetrics metrics,
+            KaalTaskCodec<T> taskCodec,
+            KaalJournal<T, R> journal,
+            KaalJitterPolicy jitterPolicy,
+            int maxDispatchesPerTick,
+            KaalRateLimiter<T, R> rateLimiter,
+            KaalMisfirePolicy misfirePolicy,
+            long misfireThreshold,
+            double misfireCatchUpRate,
+            long runTimeout,
+            KaalRunTimeouts runTimeouts,
+            KaalBackoffPolicy backoffPolicy,
+            KaalCircuitBreaker<T, R> circuitBreaker,
+            KaalTaskQueue<T, R> tasks) {
         this.pollingInterval = pollingInterval;
+        this.dispatchMode = dispatchMode;
         this.taskIdGenerator = taskIdGenerator;
         this.executorService = executorService;
         this.stopStrategy = stopStrategy;
-        this.signalGenerator = ScheduledSignal.builder()
-                .errorHandler(e -> log.error("Error running scheduled poll: " + e.getMessage(), e))
-                .interval(Duration.ofMillis(pollingInterval))
-                .build();
+        this.admissionControl = admissionControl;
+        this.completionPipeline = completionPipeline;
+        this.metrics = metrics;
+        this.metricsEnabled = metrics != KaalMetrics.NOOP;
+        this.taskCodec = taskCodec;
+        this.journal = journal;
+        this.jitterPolicy = jitterPolicy;
+        this.jitterEnabled = jitterPolicy != KaalJitterPolicy.NONE;
+        this.maxDispatchesPerTick = maxDispatchesPerTick;
+        this.rateLimiter = rateLimiter;
+        this.misfirePolicy = misfirePolicy;
+        this.misfireThreshold = misfireThreshold;
+        this.catchUpInterval = misfireCatchUpRate > 0 ? 1_000 / misfireCatchUpRate : 0;
+        this.runTimeout = runTimeout;
+        this.runTimeouts = runTimeouts;
+        this.backoffPolicy = backoffPolicy;
+        this.backoffEnabled = backoffPolicy != KaalBackoffPolicy.NONE;
+        this.circuitBreaker = circuitBreaker;
+        this.tasks = tasks;
+        this.dispatchQueue = tasks instanceof KaalDispatchQueue<T, R> queue ? queue : null;
+        if (dispatchMode == KaalDispatchMode.DEADLINE) {
+            this.signalGenerator = null;
+            this.dispatcher = new Thread(this::dispatchOnDeadline, dispatcherName);
+            this.dispatcher.setDaemon(true);
+        }
+        else {
+            this.signalGenerator = ScheduledSignal.builder()
+                    .errorHandler(e -> log.error("Error running scheduled poll: " + e.getMessage(), e))
+                    .interval(Duration.ofMillis(pollingInterval))
+                    .build();
+            this.dispatcher = null;
+        }
     }
 
     /**
@@ -95,21 +205,72 @@ public final class KaalScheduler<T extends KaalTask<T, R>, R> {
     }
 
     /**
-     * Start the scheduler
+     * Start the scheduler. If a journal has been configured using
+     * {@link KaalSchedulerBuilder#withJournal(java.nio.file.Path, KaalTaskCodec)}, runs that were pending or underway
+     * when the scheduler last stopped are put back in the queue with their original run ids and target times. Runs
+     * that became due in the meantime are dispatched right away.
      */
     public void start() {
-        taskCompleted.connect(this::handleTaskCompletion);
-        signalGenerator.connect(this::processQueuedTask);
+        if (null == completionPipeline) {
+            taskCompleted.connect(this::handleTaskCompletion);
+        }
+        else {
+            completionPipeline.start(this::deliverCompletions,
+                                     taskData -> metrics.completionDropped(taskData.getTask().id()));
+        }
+        if (metricsEnabled) {
+            registerGauges();
+        }
         clear();
-        log.info("Started task scheduler");
+        if (null != journal) {
+            recover();
+        }
+        runTimeouts.start();
+        running = true;
+        if (dispatchMode == KaalDispatchMode.DEADLINE) {
+            admissionControl.onCapacityAvailable(capacityListener);
+            dispatcher.start();
+        }
+        else {
+            signalGenerator.connect(currentTime -> processQueuedTask(currentTime.getTime()));
+        }
+        log.info("Started task scheduler in {} mode", dispatchMode);
     }
 
     /**
      * Stop the scheduler
      */
     public void stop() {
-        signalGenerator.disconnect(HANDLER_NAME);
-        signalGenerator.close();
+        val wasRunning = running;
+        running = false;
+        if (null != completionPipeline) {
+            completionPipeline.stop();
+        }
+        if (dispatchMode == KaalDispatchMode.DEADLINE) {
+            admissionControl.removeCapacityListener(capacityListener);
+            wakeDispatcher();
+        }
+        else {
+            signalGenerator.disconnect(HANDLER_NAME);
+            signalGenerator.close();
+        }
+        if (wasRunning) {
+            runTimeouts.stop();
+        }
+        //Gauges would otherwise keep reporting, and keep the scheduler reachable, after a partition is handed over
+        gaugeNames.forEach(metrics::unregisterGauge);
+        gaugeNames.clear();
+        if (null != journal) {
+            //Runs completing on executor threads append under the lock, closing under it keeps them from going
+            //midway through a record while the last flush runs
+            tasksLock.lock();
+            try {
+                journal.close();
+            }
+            finally {
+                tasksLock.unlock();
+            }
+        }
         log.info("Kaal scheduler shut down");
     }
 
@@ -117,15 +278,30 @@ public final class KaalScheduler<T extends KaalTask<T, R>, R> {
      * Clear the scheduler to remove any pending task runs
      */
     public void clear() {
-        tasks.clear();
-        deleted.clear();
+        tasksLock.lock();
+        try {
+            tasks.clear();
+            if (metricsEnabled) {
+                taskStates.keySet().forEach(metrics::unregisterTaskGauges);
+            }
+            taskStates.clear();
+            runsWaiting = 0;
+            if (null != journal) {
+                journal.cleared();
+            }
+        }
+        finally {
+            tasksLock.unlock();
+        }
         log.info("Scheduler queue purged");
     }
 
     /**
      * Signal that gets invoked when a task run completes. Please call connect() on this signal to connect your handler.
      * Please note that all handlers oin this signal will be called in sequence. So it is better to avoid any
-     * long-running code in these
+     * long-running code in these. If a completion pipeline is configured using
+     * {@link KaalSchedulerBuilder#withCompletionPipeline(int, int, int, KaalOverflowPolicy)}, handlers are called on
+     * the pipeline consumer threads after the next run has been scheduled.
      *
      * @return A reference to a synchronized signal
      */
@@ -133,6 +309,166 @@ public final class KaalScheduler<T extends KaalTask<T, R>, R> {
         return taskCompleted;
     }
 
+    /**
+     * Signal that gets invoked with a batch of completed runs. Only raised if a completion pipeline has been configured
+     * using {@link KaalSchedulerBuilder#withCompletionPipeline(int, int, int, KaalOverflowPolicy)}. Handlers are called
+     * on the pipeline consumer threads. Use this to process results in bulk, for example to write them to a database.
+     *
+     * @return A reference to a synchronized signal
+     */
+    public ConsumingSyncSignal<List<KaalTaskData<T, R>>> onTaskCompletionBatch() {
+        return taskCompletionBatch;
+    }
+
+    /**
+     * Number of completion events dropped by the completion pipeline as per it's overflow policy
+     * @return Count of dropped events since the scheduler was created, zero if there is no completion pipeline
+     */
+    public long droppedCompletionCount() {
+        return null == completionPipeline ? 0 : completionPipeline.droppedEventCount();
+    }
+
+    /**
+     * Number of times a due run was held back or pushed back because the limit on runs underway had been reached
+     * @return Count of deferred runs since the scheduler was created
+     */
+    public long deferredRunCount() {
+        return deferredRuns.sum();
+    }
+
+    /**
+     * Number of due runs dropped because the limit on runs underway had been reached and the deferral policy is
+     * {@link KaalDeferralPolicy#SKIP}
+     * @return Count of skipped runs since the scheduler was created
+     */
+    public long skippedRunCount() {
+        return skippedRuns.sum();
+    }
+
+    /**
+     * Number of due runs pushed back because the rate limit for their group had been reached. A run is counted once,
+     * when it reserves a permit for a later time.
+     * @return Count of rate limited runs since the scheduler was created
+     */
+    public long rateLimitedRunCount() {
+        return rateLimitedRuns.sum();
+    }
+
+    /**
+     * Number of due runs found to have missed their target execution time by more than the misfire threshold. A run
+     * is counted once, whatever the misfire policy does with it.
+     * @return Count of misfired runs since the scheduler was created
+     */
+    public long misfiredRunCount() {
+        return misfiredRuns.sum();
+    }
+
+    /**
+     * Number of runs cancelled because they did not complete within their timeout
+     * @return Count of timed out runs since the scheduler was created
+     */
+    public long timedOutRunCount() {
+        return timedOutRuns.sum();
+    }
+
+    /**
+     * Number of times a due run was pushed back because earlier runs of its task had failed. See
+     * {@link KaalSchedulerBuilder#withBackoff(KaalBackoffPolicy)}.
+     * @return Count of backed off runs since the scheduler was created
+     */
+    public long backedOffRunCount() {
+        return backedOffRuns.sum();
+    }
+
+    /**
+     * Number of times a due run was pushed back because the circuit for its group was open. See
+     * {@link KaalSchedulerBuilder#withCircuitBreaker(String, int, long)}.
+     * @return Count of runs held back by circuit breakers since the scheduler was created
+     */
+    public long circuitHeldRunCount() {
+        return circuitHeldRuns.sum();
+    }
+
+    /**
+     * Earliest pending run for a task. The runs of every task are kept ordered by target execution time, so this is a
+     * lookup of the first one and does not depend on the size of the queue.
+     * @param taskId Id for the task
+     * @return A copy of the pending run with the earliest target execution time, empty if the task has none
+     */
+    public Optional<KaalTaskData<T, R>> nextRun(final String taskId) {
+        tasksLock.lock();
+        try {
+            val state = taskStates.get(taskId);
+            return null == state
+                   ? Optional.empty()
+                   : Optional.ofNullable(state.getEarliestPendingRun()).map(KaalScheduler::pendingCopy);
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    /**
+     * Pending runs for a task, including due runs held back by the per-task limit on runs underway. See
+     * {@link #nextRun(String)}.
+     * @param taskId Id for the task
+     * @return Copies of the pending runs ordered by target execution time, empty if the task has none
+     */
+    public List<KaalTaskData<T, R>> pendingRuns(final String taskId) {
+        val runs = new ArrayList<KaalTaskData<T, R>>();
+        tasksLock.lock();
+        try {
+            val state = taskStates.get(taskId);
+            if (null != state) {
+                state.getPendingRuns().forEach(taskData -> runs.add(pendingCopy(taskData)));
+            }
+        }
+        finally {
+            tasksLock.unlock();
+        }
+        return runs;
+    }
+
+    /**
+     * Number of runs waiting to be dispatched across all tasks. This is the size of the queue plus due runs held back
+     * by the per-task limit on runs underway, and is read in constant time.
+     * @return Count of pending runs
+     */
+    public int pendingCount() {
+        return (int) withLock(() -> tasks.size() + runsWaiting);
+    }
+
+    /**
+     * Number of runs that have been dispatched but have not completed yet
+     * @return Count of runs underway
+     */
+    public int inFlight() {
+        return (int) withLock(() -> runsInFlight);
+    }
+
+    /**
+     * Number of runs of a task that have been dispatched but have not completed yet
+     * @param taskId Id for the task
+     * @return Count of runs underway for the task
+     */
+    public int inFlight(final String taskId) {
+        return (int) withLock(() -> {
+            val state = taskStates.get(taskId);
+            return null == state ? 0 : state.getInFlight();
+        });
+    }
+
+    /**
+     * Target execution time of the earliest run in the queue, including runs of groups at their quota. Tracked by the
+     * queue as runs come and go, see {@link KaalTaskQueue#earliestDeadline()}. Due runs held back by the per-task limit
+     * on runs underway are not in the queue and are not considered.
+     * @return Earliest deadline, empty if the queue is empty
+     */
+    public Optional<Date> earliestDeadline() {
+        val deadline = withLock(tasks::earliestDeadline);
+        return deadline == Long.MAX_VALUE ? Optional.empty() : Optional.of(new Date(deadline));
+    }
+
     /**
      * Schedule a task.
      *
@@ -153,23 +489,7 @@ public final class KaalScheduler<T extends KaalTask<T, R>, R> {
      * @return Returns id for first run
      */
     public Optional<String> schedule(final T task, final Date currTime) {
-        var delay = task.delayToNextRun(currTime);
-        if (delay < 0) {
-            log.info("Received negative delay, will not schedule a run for the task {}", task.id());
-            return Optional.empty();
-        }
-        if (delay < pollingInterval) {
-            log.warn("Provided delay of {} ms readjusted to lowest possible delay of {} ms",
-                     delay, pollingInterval);
-            delay = pollingInterval;
-        }
-        val executionTime = new Date(currTime.getTime() + delay);
-        val runId = taskIdGenerator.generateId(task, executionTime);
-        val result = schedule(task, executionTime, runId);
-
-        log.debug("Scheduled task {} with delay of {} ms at {} with run id {}. Reference time: {}",
-                task.id(), delay, executionTime, runId, currTime);
-        return result;
+        return schedule(task, currTime, false);
     }
 
     /**
@@ -195,10 +515,66 @@ public final class KaalScheduler<T extends KaalTask<T, R>, R> {
         return scheduleAt(task, new Date());
     }
 
+    /**
+     * Schedule a batch of tasks with the current time as reference time. See {@link #scheduleAll(Stream, Date)}.
+     *
+     * @param tasks Tasks to be scheduled. Must inherit from {@link KaalTask}
+     * @return Ids for the first runs, in the same order as the tasks. Empty for tasks that were not scheduled.
+     */
+    public List<Optional<String>> scheduleAll(final Collection<T> tasks) {
+        return scheduleAll(tasks.stream(), new Date());
+    }
+
+    /**
+     * Schedule a batch of tasks. This behaves the same way as calling {@link #schedule(KaalTask, Date)} for every
+     * task, but run ids are generated in a single call to {@link KaalTaskRunIdGenerator#generateIds(List, List)} and
+     * all runs are added to the queue in one go. Use this to load a large number of tasks, for example on startup.
+     *
+     * @param tasks         Tasks to be scheduled. Must inherit from {@link KaalTask}
+     * @param referenceTime Reference time to be used to calculate first and subsequent runs
+     * @return Ids for the first runs, in the same order as the tasks. Empty for tasks that were not scheduled.
+     */
+    public List<Optional<String>> scheduleAll(final Stream<T> tasks, final Date referenceTime) {
+        val batch = tasks.toList();
+        val accepted = new ArrayList<T>(batch.size());
+        val executionTimes = new ArrayList<Date>(batch.size());
+        val positions = new int[batch.size()];
+        val jitters = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            val task = batch.get(i);
+            val delay = effectiveDelay(task, referenceTime);
+            if (delay < 0) {
+                positions[i] = -1;
+                continue;
+            }
+            positions[i] = accepted.size();
+            accepted.add(task);
+            val targetTime = referenceTime.getTime() + delay;
+            jitters[accepted.size() - 1] = jitter(task, targetTime);
+            executionTimes.add(new Date(targetTime + jitters[accepted.size() - 1]));
+        }
+        val runIds = taskIdGenerator.generateIds(accepted, executionTimes);
+        val runs = new ArrayList<KaalTaskData<T, R>>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            val run = new KaalTaskData<T, R>(runIds.get(i), accepted.get(i), executionTimes.get(i));
+            run.setJitterMillis(jitters[i]);
+            runs.add(run);
+        }
+        enqueueAll(runs, true);
+        log.info("Scheduled {} out of {} tasks in bulk. Reference time: {}", runs.size(), batch.size(), referenceTime);
+        val result = new ArrayList<Optional<String>>(batch.size());
+        for (val position : positions) {
+            result.add(position < 0 ? Optional.empty() : Optional.of(runIds.get(position)));
+        }
+        return result;
+    }
+
     /**
      * Low level task scheduling. This can be typically used to recover runs from a permanent storage on restarts or
      * other recovery conditions. Subsequent runs and run conditions as well as run ids for them will proceed in the
-     * usual manner. Avoid using this for other purposes.
+     * usual manner. Avoid using this for other purposes. Consider using
+     * {@link KaalSchedulerBuilder#withJournal(java.nio.file.Path, KaalTaskCodec)} instead of maintaining pending runs
+     * in a permanent storage.
      *
      * @param task          Task to be scheduled. Must inherit from {@link KaalTask}
      * @param executionTime Time for first run and the reference time to be used for subsequent runs
@@ -209,20 +585,194 @@ public final class KaalScheduler<T extends KaalTask<T, R>, R> {
             final T task,
             final Date executionTime,
             final String runId) {
-        tasks.put(new KaalTaskData<>(runId, task, executionTime));
+        enqueue(new KaalTaskData<>(runId, task, executionTime), false);
         log.debug("A run for {} with run id {} has been scheduled at {}", task.id(), runId, executionTime);
         return Optional.of(runId);
     }
 
     /**
-     * Delete a task from the scheduler. This does not guarantee removal. It guarantees that a further tun will not be
-     * done.  A run that is already underway will not be interrupted.
+     * Write all pending runs to a file in a compact binary form, so that they can be loaded into another scheduler using
+     * {@link #restore(Path)}. See {@link #snapshot(OutputStream)}.
+     * @param path File to write to. Overwritten if it exists.
+     * @return Number of runs written
+     * @throws IOException If the snapshot could not be written
+     */
+    public long snapshot(final Path path) throws IOException {
+        try (val channel = FileChannel.open(path,
+                                            StandardOpenOption.CREATE,
+                                            StandardOpenOption.TRUNCATE_EXISTING,
+                                            StandardOpenOption.WRITE)) {
+            return snapshot(channel);
+        }
+    }
+
+    /**
+     * Write all pending runs to a stream in a compact binary form, so that they can be loaded into another scheduler
+     * using {@link #restore(InputStream)}. Every run is written with it's task id, run id, target time and the task
+     * encoded by the codec set using {@link KaalSchedulerBuilder#withTaskCodec(KaalTaskCodec)}. Runs underway are
+     * written as well, unless the next run for the task has already been scheduled, so a run can execute more than once
+     * if the snapshot is restored while it is underway. The queue is locked only to collect the runs, they are encoded
+     * and written afterwards.
+     * @param stream Stream to write to. Not closed.
+     * @return Number of runs written
+     * @throws IOException If the snapshot could not be written
+     */
+    public long snapshot(final OutputStream stream) throws IOException {
+        return snapshot(Channels.newChannel(stream));
+    }
+
+    /**
+     * Load runs from a snapshot file written by {@link #snapshot(Path)}. See {@link #restore(InputStream)}.
+     * @param path File to read from
+     * @return Number of runs restored
+     * @throws IOException If the snapshot could not be read or is corrupt. Nothing is restored in this case.
+     */
+    public long restore(final Path path) throws IOException {
+        try (val channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return restore(KaalSnapshot.read(requireTaskCodec(), channel));
+        }
+    }
+
+    /**
+     * Load runs from a snapshot written by {@link #snapshot(OutputStream)}. Runs are put in the queue with the run ids
+     * and target times they had when the snapshot was taken, and runs that are already due get dispatched right away.
+     * Subsequent runs proceed in the usual manner. Runs are added in one go, so call this after {@link #start()} on a
+     * scheduler that does not have the same tasks scheduled already.
+     * @param stream Stream to read from. Not closed.
+     * @return Number of runs restored
+     * @throws IOException If the snapshot could not be read or is corrupt. Nothing is restored in this case.
+     */
+    public long restore(final InputStream stream) throws IOException {
+        return restore(KaalSnapshot.read(requireTaskCodec(), Channels.newChannel(stream)));
+    }
+
+    /**
+     * Delete a task from the scheduler. Pending runs for the task are removed from the queue right away. A run that is
+     * already underway will not be interrupted, but no further runs will be scheduled once it completes.
      * @param id Id for the task to be deleted
      */
     public void delete(final String id) {
-        deleted.add(id);
+        tasksLock.lock();
+        try {
+            val state = taskStates.get(id);
+            if (null == state) {
+                log.debug("Task {} has no pending or running runs, nothing to delete", id);
+                return;
+            }
+            val pendingRuns = state.getPendingRuns();
+            val evicted = pendingRuns.size();
+            pendingRuns.forEach(tasks::remove);
+            pendingRuns.clear();
+            runsWaiting -= state.clearWaitingRuns();
+            if (state.getInFlight() > 0) {
+                state.setDeleted(true);
+            }
+            else {
+                removeState(id);
+            }
+            if (null != journal) {
+                journal.deleted(id);
+            }
+            log.debug("Task {} deleted. Evicted {} pending runs", id, evicted);
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    private long snapshot(final WritableByteChannel channel) throws IOException {
+        val codec = requireTaskCodec();
+        val runs = snapshotRuns();
+        KaalSnapshot.write(runs, codec, channel);
+        log.info("Wrote snapshot of {} runs", runs.size());
+        return runs.size();
+    }
+
+    /**
+     * Collect the runs to be written to a snapshot
+     * @return Pending runs and runs underway that are not followed by a run scheduled already
+     */
+    List<KaalTaskData<T, R>> snapshotRuns() {
+        val runs = new ArrayList<KaalTaskData<T, R>>();
+        tasksLock.lock();
+        try {
+            for (val state : taskStates.values()) {
+                runs.addAll(state.getPendingRuns());
+                for (val taskData : state.getRunsUnderway()) {
+                    if (taskData.getTask().scheduleMode() != KaalScheduleMode.FIXED_RATE) {
+                        runs.add(taskData);
+                    }
+                }
+            }
+        }
+        finally {
+            tasksLock.unlock();
+        }
+        return runs;
+    }
+
+    long restore(final List<KaalTaskData<T, R>> runs) {
+        enqueueAll(runs, true);
+        log.info("Restored {} runs from snapshot", runs.size());
+        return runs.size();
+    }
+
+    KaalTaskCodec<T> requireTaskCodec() {
+        if (null == taskCodec) {
+            throw new IllegalStateException("A task codec needs to be set using withTaskCodec() to take or restore "
+                                                    + "snapshots");
+        }
+        return taskCodec;
+    }
+
+    private Optional<String> schedule(final T task, final Date currTime, boolean reschedule) {
+        return Optional.ofNullable(scheduleRun(task, currTime, reschedule));
+    }
+
+    /**
+     * Schedule the next run for a task. Returns the run id rather than an {@link Optional} so that rescheduling on
+     * completion does not allocate anything beyond the run itself.
+     * @return Run id, or null if no run was scheduled
+     */
+    private String scheduleRun(final T task, final Date currTime, boolean reschedule) {
+        val taskData = nextRun(task, currTime);
+        if (null == taskData) {
+            return null;
+        }
+        val runId = taskData.getRunId();
+        if (!enqueue(taskData, reschedule)) {
+            log.debug("Task {} has been deleted, run {} will not be scheduled", task.id(), runId);
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Scheduled task {} at {} with run id {}. Reference time: {}",
+                      task.id(), taskData.getTargetExecutionTimeMillis(), runId, currTime);
+        }
+        return runId;
     }
 
+    /**
+     * Create the next run for a task
+     * @return Data for the run, or null if the task does not need to run any more
+     */
+    private KaalTaskData<T, R> nextRun(final T task, final Date currTime) {
+        val delay = effectiveDelay(task, currTime);
+        if (delay < 0) {
+            return null;
+        }
+        val targetTime = currTime.getTime() + delay;
+        val jitter = jitter(task, targetTime);
+        val executionTime = targetTime + jitter;
+        val taskData = new KaalTaskData<T, R>(taskIdGenerator.generateId(task, executionTime), task, executionTime);
+        taskData.setJitterMillis(jitter);
+        return taskData;
+    }
+
+    private long jitter(final T task, long targetTime) {
+        return jitterEnabled ? Math.max(0, jitterPolicy.jitter(task.id(), targetTime)) : 0;
+    }
+
+
     private void handleTaskCompletion(KaalTaskData<T, R> taskData) {
         val taskId = taskData.getTask().id();
         if (null == taskData.getException()) {
@@ -234,71 +784,755 @@ public final class KaalScheduler<T extends KaalTask<T, R>, R> {
                      taskData.getRunId(),
                      errorMessage(taskData.getException()));
         }
-        if (deleted.contains(taskId)) { //Will get hit if deleted during task execution
-            log.debug("Looks like task {} has already been deleted .. no further scheduling necessary", taskId);
-            deleted.remove(taskId);
-            return;
+        KaalTaskData<T, R> nextRun = null;
+        try {
+            if (recordOutcome(taskData)) { //Will get hit if deleted during task execution
+                log.debug("Looks like task {} has already been deleted .. no further scheduling necessary", taskId);
+                return;
+            }
+            val fixedRate = taskData.getTask().scheduleMode() == KaalScheduleMode.FIXED_RATE;
+            if (!stopStrategy.scheduleNext(taskData)) {
+                log.info("Task {} will not be scheduled further as stop strategy returned false", taskId);
+                if (fixedRate) { //Next run has already been scheduled when this one started
+                    delete(taskId);
+                }
+                return;
+            }
+            if (fixedRate) {
+                return;
+            }
+            if (firesOnce(taskData)) {
+                log.debug("Run {}/{} stood in for missed runs, next run will not be adjusted for drift",
+                          taskId, taskData.getRunId());
+                nextRun = nextRun(taskData.getTask(), new Date());
+            }
+            else {
+                val drift = taskData.drift();
+                if (log.isDebugEnabled()) {
+                    log.debug("Adjusting next run of {} for a drift of {} ms", taskId, drift);
+                }
+                //Jitter is taken out, so that it does not add up over runs
+                nextRun = nextRun(taskData.getTask(),
+                                  new Date(System.currentTimeMillis() - drift - taskData.getJitterMillis()));
+            }
+        }
+        finally {
+            runFinished(taskData, nextRun);
+        }
+    }
+
+    private long effectiveDelay(final T task, final Date currTime) {
+        val delay = task.delayToNextRun(currTime);
+        if (delay < 0) {
+            log.info("Received negative delay, will not schedule a run for the task {}", task.id());
+            return -1;
+        }
+        if (dispatchMode == KaalDispatchMode.POLLING && delay < pollingInterval) {
+            log.warn("Provided delay of {} ms readjusted to lowest possible delay of {} ms",
+                     delay, pollingInterval);
+            return pollingInterval;
+        }
+        return delay;
+    }
+
+    /**
+     * Add a run to the queue and index it against its task.
+     * @param taskData Data for the run
+     * @param reschedule Whether this is a subsequent run being scheduled on completion of an earlier one
+     * @return False if the run was rejected because the task was deleted while the earlier run was underway
+     */
+    private boolean enqueue(final KaalTaskData<T, R> taskData, boolean reschedule) {
+        tasksLock.lock();
+        try {
+            val state = stateFor(taskData.getTask().id());
+            if (reschedule && state.isDeleted()) {
+                return false;
+            }
+            queueRun(taskData, state);
+            return true;
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    private void queueRun(final KaalTaskData<T, R> taskData, final KaalTaskState<T, R> state) {
+        if (null != journal) {
+            journal.scheduled(taskData);
         }
-        if (!stopStrategy.scheduleNext(taskData)) {
-            log.info("Task {} will not be scheduled further as stop strategy returned false", taskId);
+        val earlierThanPending = taskData.getTargetExecutionTimeMillis() < tasks.nextDueTime();
+        tasks.put(taskData);
+        state.addPendingRun(taskData);
+        if (earlierThanPending && null != dispatcher) {
+            dueTimeChanged.signal();
+        }
+    }
+
+    /**
+     * Add a batch of runs to the queue
+     * @param runs Data for the runs
+     * @param journaled Whether the runs need to be written to the journal. False for runs recovered from it.
+     */
+    private void enqueueAll(final List<KaalTaskData<T, R>> runs, boolean journaled) {
+        if (runs.isEmpty()) {
             return;
         }
-        val drift = taskData.drift();
-        log.debug("Adjusting next run of {} for a drift of {} ms", taskId, drift);
-        schedule(taskData.getTask(), Date.from(Instant.now().minus(drift, ChronoUnit.MILLIS)));
+        var earliest = Long.MAX_VALUE;
+        for (val taskData : runs) {
+            earliest = Math.min(earliest, taskData.getTargetExecutionTimeMillis());
+        }
+        tasksLock.lock();
+        try {
+            if (journaled && null != journal) {
+                runs.forEach(journal::scheduled);
+            }
+            val earlierThanPending = earliest < tasks.nextDueTime();
+            tasks.putAll(runs);
+            for (val taskData : runs) {
+                stateFor(taskData.getTask().id()).addPendingRun(taskData);
+            }
+            if (earlierThanPending && null != dispatcher) {
+                dueTimeChanged.signal();
+            }
+        }
+        finally {
+            tasksLock.unlock();
+        }
     }
 
-    private void processQueuedTask(Date currentTime) {
-        while (true) {
-            val taskData = tasks.peek();
-            var canContinue = false;
-            if (taskData == null) {
-                log.trace("Nothing queued... will sleep again");
+    /**
+     * Keep track of failures of the task of a completed run for backoff and circuit breaking, and check if the task
+     * has been deleted while the run was underway
+     * @return True if the task has been deleted
+     */
+    private boolean recordOutcome(final KaalTaskData<T, R> taskData) {
+        val task = taskData.getTask();
+        val failed = null != taskData.getException();
+        val currentTime = System.currentTimeMillis();
+        if (null != circuitBreaker && circuitBreaker.record(task, failed, currentTime)) {
+            log.warn("Circuit for the group of task {} opened after failure of run {}", task.id(), taskData.getRunId());
+        }
+        tasksLock.lock();
+        try {
+            val state = taskStates.get(task.id());
+            if (null == state) {
+                return false;
             }
-            else {
-                val taskId = taskData.getTask().id();
-                val runId = taskData.getRunId();
-                log.trace("Received task {}/{}", taskId, runId);
-                if (currentTime.before(taskData.getTargetExecutionTime())) {
-                    log.trace("Found non-executable earliest task: {}/{}", taskId, runId);
+            if (state.isDeleted()) {
+                return true;
+            }
+            if (backoffEnabled && failed) {
+                val backoff = backoffPolicy.backoff(state.getConsecutiveFailures() + 1);
+                state.runFailed(backoff > 0 ? currentTime + backoff : 0);
+            }
+            else if (state.getConsecutiveFailures() > 0) {
+                state.runSucceeded();
+            }
+            return false;
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    /**
+     * Account for a completed run and queue the next run for the task in one go. This makes sure the dispatcher never
+     * sees the next run while the completed one still counts against the limits on runs underway.
+     * @param taskData Data for the completed run
+     * @param nextRun Next run for the task, null if there is none
+     */
+    private void runFinished(final KaalTaskData<T, R> taskData, final KaalTaskData<T, R> nextRun) {
+        val taskId = taskData.getTask().id();
+        tasksLock.lock();
+        try {
+            runsInFlight--;
+            if (null != dispatchQueue && dispatchQueue.runFinished(taskData.getTask()) && null != dispatcher) {
+                dueTimeChanged.signal(); //Runs of the group might be waiting for this one to finish
+            }
+            val state = null == nextRun
+                        ? taskStates.get(taskId)
+                        : stateFor(taskId);
+            if (null != state) {
+                if (null != nextRun) {
+                    if (state.isDeleted()) {
+                        log.debug("Task {} has been deleted, run {} will not be scheduled",
+                                  taskId, nextRun.getRunId());
+                    }
+                    else {
+                        queueRun(nextRun, state);
+                        log.debug("Scheduled next run {} for task {}", nextRun.getRunId(), taskId);
+                    }
+                }
+                state.runFinished(taskData);
+                val waitingRun = state.pollWaitingRun();
+                if (null != waitingRun) { //Already due, goes to the head of the queue
+                    runsWaiting--;
+                    tasks.put(waitingRun);
+                    if (null != dispatcher) {
+                        dueTimeChanged.signal();
+                    }
+                }
+                if (state.isIdle()) {
+                    removeState(taskId);
                 }
-                else {
-                    canContinue = true;
+            }
+            if (null != journal) {
+                journal.completed(taskData);
+            }
+        }
+        finally {
+            tasksLock.unlock();
+            admissionControl.release();
+        }
+    }
+
+    private void journalCompleted(final KaalTaskData<T, R> taskData) {
+        tasksLock.lock();
+        try {
+            journal.completed(taskData);
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    private void recover() {
+        final List<KaalTaskData<T, R>> runs;
+        try {
+            runs = journal.open();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not recover pending runs from journal: " + e.getMessage(), e);
+        }
+        enqueueAll(runs, false);
+        log.info("Recovered {} pending runs from journal", runs.size());
+    }
+
+    /**
+     * Dispatch all runs that are due at the provided time, up to the limit on dispatches per tick if one is set.
+     * Package private to allow benchmarks to drive dispatch.
+     * @param currentTime Current time in epoch milliseconds
+     */
+    void processQueuedTask(long currentTime) {
+        var dispatched = 0;
+        while (true) {
+            if (maxDispatchesPerTick > 0 && dispatched++ == maxDispatchesPerTick) {
+                //Rest of the due runs go out in subsequent ticks. Polls happen once a tick anyway, the dispatcher
+                //needs to be held back explicitly.
+                if (dispatchMode == KaalDispatchMode.DEADLINE) {
+                    throttledUntil = currentTime + pollingInterval;
                 }
+                log.debug("Dispatched {} runs in this tick, rest will be dispatched later", maxDispatchesPerTick);
+                break;
             }
-            if (!canContinue) {
+            val taskData = pollDue(currentTime);
+            if (taskData == null) {
                 log.trace("Nothing to do now, will try again later.");
                 break;
             }
-            try {
-                val taskId = taskData.getTask().id();
-                val runId = taskData.getRunId();
-                if (deleted.contains(taskId)) { //Will get hit if delete was called during pause
-                    log.debug("Looks like task {} has already been deleted .. run {} will be ignored", taskId, runId);
-                    deleted.remove(taskId);
-                }
-                else {
-                    executorService.submit(() -> executeTask(taskData));
-                    log.debug("{}/{} submitted for execution", taskId, runId);
+            val task = taskData.getTask();
+            val taskId = task.id();
+            if (task.scheduleMode() == KaalScheduleMode.FIXED_RATE) {
+                //A run standing in for missed ones restarts the cadence from now
+                scheduleRun(task,
+                            new Date(firesOnce(taskData)
+                                     ? currentTime
+                                     : taskData.getTargetExecutionTimeMillis() - taskData.getJitterMillis()),
+                            true);
+                if (null != journal) { //Next run takes over on recovery, this one is not run again
+                    journalCompleted(taskData);
                 }
-                val status = tasks.remove(taskData);
-                log.trace("task run for {}/{} acked with status: {}", taskId, runId, status);
+            }
+            try {
+                executorService.execute(() -> executeTask(taskData));
+                log.debug("{}/{} submitted for execution", taskId, taskData.getRunId());
             }
             catch (Exception e) {
                 log.error("Error scheduling topology task: ", e);
+                runFinished(taskData, null);
+            }
+        }
+    }
+
+    private void dispatchOnDeadline() {
+        while (running) {
+            try {
+                processQueuedTask(System.currentTimeMillis());
+                awaitNextDueTime();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info("Dispatcher interrupted, no further runs will be dispatched");
+                return;
+            }
+            catch (Exception e) {
+                log.error("Error dispatching runs: " + e.getMessage(), e);
+            }
+        }
+        log.debug("Dispatcher thread exiting");
+    }
+
+    private void awaitNextDueTime() throws InterruptedException {
+        tasksLock.lock();
+        try {
+            while (running) {
+                val queuedDueTime = tasks.nextDueTime();
+                if (queuedDueTime == Long.MAX_VALUE) {
+                    dueTimeChanged.await();
+                    continue;
+                }
+                val nextDueTime = Math.max(queuedDueTime, throttledUntil);
+                val waitTime = nextDueTime - System.currentTimeMillis();
+                if (waitTime <= 0) {
+                    if (!admissionControl.dispatchBlocked()) {
+                        return;
+                    }
+                    dueTimeChanged.await(); //Woken up once a run completes
+                    continue;
+                }
+                dueTimeChanged.await(waitTime, TimeUnit.MILLISECONDS);
+            }
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    private void wakeDispatcher() {
+        tasksLock.lock();
+        try {
+            dueTimeChanged.signalAll();
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    /**
+     * Take the next due run off the queue that can be started without going over the limits on runs underway. Due runs
+     * over the limits are deferred as per the deferral policy.
+     * @param currentTime Current time in epoch milliseconds
+     * @return A run that has been admitted for execution, null if there is none
+     */
+    private KaalTaskData<T, R> pollDue(long currentTime) {
+        tasksLock.lock();
+        try {
+            while (!admissionControl.dispatchBlocked()) {
+                val taskData = tasks.pollDue(currentTime);
+                if (null == taskData) {
+                    return null;
+                }
+                val state = taskStates.get(taskData.getTask().id());
+                if (!taskData.isMisfired()
+                        && currentTime - taskData.getTargetExecutionTimeMillis() > misfireThreshold
+                        && misfired(taskData, state, currentTime)) {
+                    continue;
+                }
+                if (null != state && state.getBackoffUntil() > currentTime) {
+                    requeue(taskData, state, state.getBackoffUntil());
+                    backedOffRuns.increment();
+                    metrics.runBackedOff(taskData.getTask().id());
+                    log.debug("Run {}/{} backed off till {} after {} failures", taskData.getTask().id(),
+                              taskData.getRunId(), state.getBackoffUntil(), state.getConsecutiveFailures());
+                    continue;
+                }
+                val maxInFlight = admissionControl.maxInFlightFor(taskData.getTask());
+                if (null != state && maxInFlight > 0 && state.getInFlight() >= maxInFlight) {
+                    defer(taskData, state, currentTime, false);
+                    continue;
+                }
+                if (null != circuitBreaker) {
+                    val permittedAt = circuitBreaker.permit(taskData.getTask(), currentTime);
+                    if (permittedAt > currentTime) {
+                        requeue(taskData, state, permittedAt);
+                        circuitHeldRuns.increment();
+                        metrics.runHeldByCircuit(taskData.getTask().id());
+                        log.debug("Run {}/{} held back till {} as circuit is open",
+                                  taskData.getTask().id(), taskData.getRunId(), permittedAt);
+                        continue;
+                    }
+                }
+                if (null != rateLimiter && !taskData.isRateLimitPermitted()) {
+                    //The permit stays with the run, even if it has to wait for a slot below
+                    val permittedAt = rateLimiter.reserve(taskData.getTask(), currentTime);
+                    taskData.setRateLimitPermitted(true);
+                    if (permittedAt > currentTime) {
+                        requeue(taskData, state, permittedAt);
+                        rateLimitedRuns.increment();
+                        metrics.runRateLimited(taskData.getTask().id());
+                        log.debug("Run {}/{} rate limited till {}",
+                                  taskData.getTask().id(), taskData.getRunId(), permittedAt);
+                        continue;
+                    }
+                }
+                if (taskData.isMisfired() && catchUpInterval > 0 && !taskData.isCatchUpPermitted()
+                        && misfirePolicyFor(taskData.getTask()) == KaalMisfirePolicy.FIRE_ALL) {
+                    //Like the rate limit permit, the slot stays with the run so it is not held back again when due
+                    val permittedAt = reserveCatchUp(currentTime);
+                    taskData.setCatchUpPermitted(true);
+                    if (permittedAt > currentTime) {
+                        //Hold back is taken out along with jitter, so the next run keeps the cadence of missed ones
+                        taskData.setJitterMillis(taskData.getJitterMillis()
+                                                         + permittedAt - taskData.getTargetExecutionTimeMillis());
+                        requeue(taskData, state, permittedAt);
+                        log.debug("Run {}/{} held back till {} to keep within the catch up rate",
+                                  taskData.getTask().id(), taskData.getRunId(), permittedAt);
+                        continue;
+                    }
+                }
+                if (!admissionControl.tryAcquire()) {
+                    if (admissionControl.getDeferralPolicy() == KaalDeferralPolicy.WAIT) {
+                        tasks.put(taskData);
+                        return null;
+                    }
+                    defer(taskData, state, currentTime, true);
+                    continue;
+                }
+                if (null != state) {
+                    state.removePendingRun(taskData);
+                    state.runStarted(taskData);
+                }
+                if (null != dispatchQueue) {
+                    dispatchQueue.runStarted(taskData.getTask());
+                }
+                runsInFlight++;
+                return taskData;
+            }
+            return null;
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    /**
+     * Handle a due run that is over the limits on runs underway. Called with the lock held.
+     * @param globalLimit True if the global limit was hit, false if it was the per-task limit
+     */
+    private void defer(
+            final KaalTaskData<T, R> taskData,
+            final KaalTaskState<T, R> state,
+            long currentTime,
+            boolean globalLimit) {
+        val task = taskData.getTask();
+        switch (admissionControl.getDeferralPolicy()) {
+            case WAIT -> {
+                //Only the per-task limit gets here, runs held back by the global limit stay in the queue
+                state.addWaitingRun(taskData);
+                runsWaiting++;
+                deferredRuns.increment();
+                metrics.runDeferred(task.id());
+            }
+            case DELAY -> {
+                requeue(taskData, state, currentTime + pollingInterval);
+                deferredRuns.increment();
+                metrics.runDeferred(task.id());
+                log.debug("Run {}/{} deferred by {} ms", task.id(), taskData.getRunId(), pollingInterval);
             }
+            case SKIP -> {
+                skippedRuns.increment();
+                metrics.runSkipped(task.id());
+                log.debug("Run {}/{} skipped", task.id(), taskData.getRunId());
+                //Otherwise the run underway schedules the next one
+                dropRun(taskData, state, currentTime,
+                        globalLimit || task.scheduleMode() == KaalScheduleMode.FIXED_RATE);
+            }
+        }
+    }
+
+    /**
+     * Account for a due run that missed its target execution time by more than the misfire threshold. Called with the
+     * lock held.
+     * @return True if the run was dropped as per the misfire policy
+     */
+    private boolean misfired(final KaalTaskData<T, R> taskData, final KaalTaskState<T, R> state, long currentTime) {
+        val task = taskData.getTask();
+        val lateness = currentTime - taskData.getTargetExecutionTimeMillis();
+        taskData.setMisfired(true);
+        misfiredRuns.increment();
+        metrics.runMisfired(task.id(), lateness);
+        if (misfirePolicyFor(task) != KaalMisfirePolicy.SKIP) {
+            log.debug("Run {}/{} misfired by {} ms", task.id(), taskData.getRunId(), lateness);
+            return false;
+        }
+        log.debug("Run {}/{} misfired by {} ms and has been skipped", task.id(), taskData.getRunId(), lateness);
+        dropRun(taskData, state, currentTime, true);
+        return true;
+    }
+
+    /**
+     * Reserve the next slot within the catch up rate for a misfired run. Called with the lock held.
+     * @return Time in epoch milliseconds from which the run can be started
+     */
+    private long reserveCatchUp(long currentTime) {
+        //Unused time is carried over for at most one polling interval, which bounds the burst after a quiet period
+        val slot = Math.max(nextCatchUpTime, currentTime - pollingInterval);
+        nextCatchUpTime = slot + catchUpInterval;
+        return (long) Math.ceil(slot);
+    }
+
+    /**
+     * Drop a due run, optionally scheduling the next run for the task. Called with the lock held.
+     */
+    private void dropRun(
+            final KaalTaskData<T, R> taskData,
+            final KaalTaskState<T, R> state,
+            long currentTime,
+            boolean scheduleNext) {
+        val task = taskData.getTask();
+        if (null != state) {
+            state.removePendingRun(taskData);
+        }
+        if (null != journal) {
+            journal.completed(taskData);
+        }
+        if (scheduleNext) {
+            //Reference time is moved ahead so that a zero delay does not bring the run back in the current dispatch
+            //pass
+            scheduleRun(task, new Date(currentTime + 1), true);
+        }
+        if (null != state && state.isIdle()) {
+            removeState(task.id());
+        }
+    }
+
+    private KaalMisfirePolicy misfirePolicyFor(final T task) {
+        return Objects.requireNonNullElse(task.misfirePolicy(), misfirePolicy);
+    }
+
+    /**
+     * Check if a run stands in for the runs it missed, in which case the next run is not lined up with its target
+     */
+    private boolean firesOnce(final KaalTaskData<T, R> taskData) {
+        return taskData.isMisfired() && misfirePolicyFor(taskData.getTask()) == KaalMisfirePolicy.FIRE_ONCE;
+    }
+
+    /**
+     * Push a due run back in the queue to the provided time, keeping its run id. Called with the lock held.
+     */
+    private void requeue(final KaalTaskData<T, R> taskData, final KaalTaskState<T, R> state, long targetTime) {
+        val requeuedRun = new KaalTaskData<T, R>(taskData.getRunId(), taskData.getTask(), targetTime);
+        requeuedRun.setJitterMillis(taskData.getJitterMillis());
+        requeuedRun.setRateLimitPermitted(taskData.isRateLimitPermitted());
+        requeuedRun.setMisfired(taskData.isMisfired());
+        requeuedRun.setCatchUpPermitted(taskData.isCatchUpPermitted());
+        if (null != journal) {
+            journal.scheduled(requeuedRun);
+        }
+        tasks.put(requeuedRun);
+        if (null != state) {
+            state.removePendingRun(taskData);
+            state.addPendingRun(requeuedRun);
         }
     }
 
     private void executeTask(KaalTaskData<T, R> taskData) {
-        taskData.setActualStartTime(new Date());
+        val startTime = System.currentTimeMillis();
+        taskData.setActualStartTimeMillis(startTime);
+        val task = taskData.getTask();
+        metrics.runStarted(task.id(), startTime - taskData.getTargetExecutionTimeMillis());
+        val timeout = startTimeout(taskData, startTime);
+        if (task instanceof KaalAsyncTask<?, ?>) {
+            executeAsyncTask(taskData, new Date(startTime), timeout);
+            return;
+        }
+        if (null != timeout) {
+            timeout.runningOn(Thread.currentThread());
+        }
+        R result = null;
+        Throwable error = null;
+        try {
+            result = task.apply(new Date(startTime), taskData);
+        }
+        catch (Throwable t) {
+            error = t;
+        }
+        finally {
+            if (null != timeout) {
+                timeout.finishedRunning();
+            }
+        }
+        finishRun(taskData, result, error);
+    }
+
+    /**
+     * Start tracking the deadline for a run, if the task or the scheduler sets a timeout
+     * @return Handle for the deadline, null if the run has no timeout
+     */
+    private KaalRunTimeouts.Timeout startTimeout(final KaalTaskData<T, R> taskData, long startTime) {
+        val taskTimeout = taskData.getTask().runTimeout();
+        val limit = taskTimeout > 0 ? taskTimeout : runTimeout;
+        if (limit <= 0) {
+            return null;
+        }
+        val timeout = runTimeouts.register(startTime + limit, expired -> timedOut(taskData, expired, limit));
+        taskData.setTimeout(timeout);
+        return timeout;
+    }
+
+    /**
+     * Cancel a run that reached its deadline and complete it with a {@link TimeoutException}. Called on the timeout
+     * thread, completion is handed over to the executor so that handlers do not hold up other timeouts.
+     */
+    private void timedOut(final KaalTaskData<T, R> taskData, final KaalRunTimeouts.Timeout timeout, long limit) {
+        if (!taskData.markCompleted()) {
+            return;
+        }
+        val taskId = taskData.getTask().id();
+        timedOutRuns.increment();
+        metrics.runTimedOut(taskId);
+        log.warn("Task run {}/{} did not complete within {} ms and will be cancelled",
+                 taskId, taskData.getRunId(), limit);
+        timeout.cancel();
+        taskData.setException(new TimeoutException(
+                "Run " + taskData.getRunId() + " of task " + taskId + " timed out after " + limit + " ms"));
+        try {
+            executorService.execute(() -> completeRun(taskData));
+        }
+        catch (Exception e) {
+            log.warn("Could not hand over completion of timed out run {}/{}: {}",
+                     taskId, taskData.getRunId(), errorMessage(e));
+            completeRun(taskData);
+        }
+    }
+
+    /**
+     * Record the outcome of a run and complete it, unless it has already been completed as timed out
+     */
+    private void finishRun(final KaalTaskData<T, R> taskData, final R result, final Throwable error) {
+        if (!taskData.markCompleted()) {
+            log.debug("Task run {}/{} returned after timing out, outcome discarded",
+                      taskData.getTask().id(), taskData.getRunId());
+            return;
+        }
+        val timeout = taskData.getTimeout();
+        if (null != timeout) {
+            runTimeouts.unregister(timeout);
+        }
+        completeRun(null == error ? taskData.setResult(result) : taskData.setException(error));
+    }
+
+    /**
+     * Raise completion for a run. Without a completion pipeline, the signal is raised right away and the next run is
+     * scheduled by the last handler. With one, the next run is scheduled first and the event is queued for delivery.
+     */
+    private void completeRun(final KaalTaskData<T, R> taskData) {
+        if (metricsEnabled) {
+            metrics.runCompleted(taskData.getTask().id(),
+                                 System.currentTimeMillis() - taskData.getActualStartTimeMillis(),
+                                 null != taskData.getException());
+        }
+        if (null == completionPipeline) {
+            taskCompleted.dispatch(taskData);
+            return;
+        }
         try {
-            taskCompleted.dispatch(
-                    taskData.setResult(taskData.getTask().apply(new Date(), taskData)));
+            handleTaskCompletion(taskData);
+        }
+        catch (Exception e) {
+            log.error("Error handling completion of run " + taskData.getRunId() + ": " + e.getMessage(), e);
+        }
+        completionPipeline.publish(taskData);
+    }
+
+    private void deliverCompletions(final List<KaalTaskData<T, R>> batch) {
+        batch.forEach(taskCompleted::dispatch);
+        taskCompletionBatch.dispatch(batch);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void executeAsyncTask(
+            KaalTaskData<T, R> taskData,
+            Date startTime,
+            KaalRunTimeouts.Timeout timeout) {
+        final CompletionStage<R> stage;
+        try {
+            stage = ((KaalAsyncTask) taskData.getTask()).applyAsync(startTime, taskData);
         }
         catch (Throwable t) {
-            taskCompleted.dispatch(taskData.setException(t));
+            finishRun(taskData, null, t);
+            return;
+        }
+        if (null == stage) {
+            finishRun(taskData, null,
+                      new IllegalStateException("No completion stage returned for run " + taskData.getRunId()));
+            return;
         }
+        if (null != timeout) {
+            timeout.completesWith(stage);
+        }
+        stage.whenComplete((result, error) -> finishRun(
+                taskData,
+                result,
+                error instanceof CompletionException && null != error.getCause() ? error.getCause() : error));
+    }
+
+    private void registerGauges() {
+        registerGauge("queue.size", () -> withLock(tasks::size));
+        registerGauge("queue.overdue", () -> withLock(() -> {
+            val nextDueTime = tasks.nextDueTime();
+            return nextDueTime == Long.MAX_VALUE ? 0 : Math.max(0, System.currentTimeMillis() - nextDueTime);
+        }));
+        registerGauge("tasks.active", () -> withLock(taskStates::size));
+        registerGauge("runs.in_flight", () -> withLock(() -> runsInFlight));
+        if (executorService instanceof ThreadPoolExecutor threadPool) {
+            registerGauge("executor.active", threadPool::getActiveCount);
+            registerGauge("executor.pool.size", threadPool::getPoolSize);
+            registerGauge("executor.queue.size", () -> threadPool.getQueue().size());
+        }
+    }
+
+    private void registerGauge(final String name, final LongSupplier value) {
+        metrics.registerGauge(name, value);
+        gaugeNames.add(name);
+    }
+
+    /**
+     * State for a task, created if the task has none. Needs to be called with the tasks lock held.
+     */
+    private KaalTaskState<T, R> stateFor(final String taskId) {
+        var state = taskStates.get(taskId);
+        if (null == state) {
+            state = new KaalTaskState<>(taskId);
+            taskStates.put(taskId, state);
+            if (metricsEnabled) {
+                metrics.registerTaskGauge(taskId, "pending",
+                                          () -> withTaskState(taskId, s -> s.getPendingRuns().size()));
+                metrics.registerTaskGauge(taskId, "in_flight", () -> withTaskState(taskId, KaalTaskState::getInFlight));
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Drop the state for a task that has nothing pending or underway. Needs to be called with the tasks lock held.
+     */
+    private void removeState(final String taskId) {
+        taskStates.remove(taskId);
+        if (metricsEnabled) {
+            metrics.unregisterTaskGauges(taskId);
+        }
+    }
+
+    private long withTaskState(final String taskId, final ToLongFunction<KaalTaskState<T, R>> reader) {
+        return withLock(() -> {
+            val state = taskStates.get(taskId);
+            return null == state ? 0 : reader.applyAsLong(state);
+        });
+    }
+
+    private long withLock(final LongSupplier supplier) {
+        tasksLock.lock();
+        try {
+            return supplier.getAsLong();
+        }
+        finally {
+            tasksLock.unlock();
+        }
+    }
+
+    private static <T extends KaalTask<T, R>, R> KaalTaskData<T, R> pendingCopy(final KaalTaskData<T, R> taskData) {
+        return new KaalTaskData<>(taskData.getRunId(), taskData.getTask(), taskData.getTargetExecutionTimeMillis());
     }
 
     private static String errorMessage(Throwable t) {
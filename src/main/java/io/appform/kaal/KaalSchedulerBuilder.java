@@ -16,10 +16,16 @@ package io.appform.kaal;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import lombok.val;
 
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Customize and build a {@link KaalScheduler} instance. Please calls {@link KaalScheduler#start()} to start the scheduler.
@@ -28,14 +34,51 @@ import java.util.concurrent.Executors;
 public class KaalSchedulerBuilder <T extends KaalTask<T, R>, R> {
 
     private static final long DEFAULT_CHECK_DELAY = 100;
+    private static final long DEFAULT_JOURNAL_FLUSH_INTERVAL = 10;
+    private static final int JOURNAL_SEGMENT_SIZE = 64 << 20;
+    private static final long DEFAULT_LEASE_DURATION = 10_000;
+    private static final int DEFAULT_CLUSTER_PARTITION_COUNT = 64;
+    private static final long DEFAULT_MISFIRE_THRESHOLD = 60_000;
 
     private long pollingInterval = DEFAULT_CHECK_DELAY;
+    private KaalDispatchMode dispatchMode = KaalDispatchMode.POLLING;
     private KaalTaskRunIdGenerator<T, R> taskIdGenerator;
     private KaalTaskStopStrategy<T,R> stopStrategy;
     private ExecutorService executorService;
+    private boolean virtualThreads;
+    private int maxInFlight;
+    private int maxInFlightPerTask;
+    private KaalDeferralPolicy deferralPolicy = KaalDeferralPolicy.WAIT;
+    private KaalMetrics metrics;
+    private boolean completionPipeline;
+    private int completionQueueCapacity;
+    private int completionBatchSize;
+    private int completionConsumers;
+    private KaalOverflowPolicy completionOverflowPolicy;
+    private Supplier<KaalTaskQueue<T, R>> taskQueueFactory;
+    private Path journalDirectory;
+    private KaalTaskCodec<T> taskCodec;
+    private long journalFlushInterval;
+    private Integer partitionCount;
+    private long leaseDuration = DEFAULT_LEASE_DURATION;
+    private KaalJitterPolicy jitterPolicy;
+    private int maxDispatchesPerTick;
+    private final Map<String, KaalRateLimiter.Limit> rateLimits = new HashMap<>();
+    private Function<T, String> groupExtractor;
+    private Supplier<KaalDispatchPolicy<T, R>> dispatchPolicyFactory;
+    private final Map<String, Integer> groupQuotas = new HashMap<>();
+    private KaalMisfirePolicy misfirePolicy;
+    private long misfireThreshold = DEFAULT_MISFIRE_THRESHOLD;
+    private double misfireCatchUpRate;
+    private long runTimeout;
+    private KaalBackoffPolicy backoffPolicy;
+    private final Map<String, KaalCircuitBreaker.Settings> circuitBreakers = new HashMap<>();
 
     /**
-     * Set the interval at which scheduler looks for new runs to execute. Default is 100 ms.
+     * Set the interval at which scheduler looks for new runs to execute. Default is 100 ms. In
+     * {@link KaalDispatchMode#DEADLINE} mode the queue is not polled, but the interval is still used as the length of
+     * a tick for {@link #withMaxDispatchesPerTick(int)}, the step by which {@link KaalDeferralPolicy#DELAY} pushes runs
+     * back and the burst allowed by {@link #withMisfireCatchUpRate(double)}.
      * @param pollingInterval The interval to be set
      * @return Reference to the builder
      */
@@ -44,6 +87,18 @@ public class KaalSchedulerBuilder <T extends KaalTask<T, R>, R> {
         return this;
     }
 
+    /**
+     * Set the mode used to look for runs that are due for execution. Default is {@link KaalDispatchMode#POLLING}.
+     * In {@link KaalDispatchMode#DEADLINE} mode the polling interval no longer decides when runs are dispatched or
+     * raises short delays, but it still controls the settings listed in {@link #withPollingInterval(long)}.
+     * @param dispatchMode The mode to be set
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withDispatchMode(final KaalDispatchMode dispatchMode) {
+        this.dispatchMode = dispatchMode;
+        return this;
+    }
+
     /**
      * Provide a custom ID generator. If not provided, {@link KaalRandomTaskRunIdGenerator} is used to generate run id.
      * @param taskIdGenerator Custom implementation of {@link KaalRandomTaskRunIdGenerator}
@@ -74,14 +129,544 @@ public class KaalSchedulerBuilder <T extends KaalTask<T, R>, R> {
         return this;
     }
 
+    /**
+     * Run every task on it's own virtual thread instead of the default cached thread pool. This suits tasks that
+     * spend most of their time blocked on IO. Virtual threads need Java 21 or later, tasks run on the default cached
+     * thread pool on older runtimes. Ignored if an executor service is provided using
+     * {@link #withExecutorService(ExecutorService)}.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withVirtualThreads() {
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * Maximum number of runs that can be underway at the same time across all tasks. Due runs over the limit are
+     * handled as per the deferral policy and never pile up inside the executor. For a {@link KaalShardedScheduler} the
+     * limit applies across all partitions. Default is zero, which means unlimited.
+     * @param maxInFlight Maximum runs underway
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Maximum number of runs of a single task that can be underway at the same time. Tasks can override this using
+     * {@link KaalTask#maxConcurrentRuns()}. Default is zero, which means unlimited.
+     * @param maxInFlightPerTask Maximum runs underway for a task
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withMaxInFlightPerTask(int maxInFlightPerTask) {
+        this.maxInFlightPerTask = maxInFlightPerTask;
+        return this;
+    }
+
+    /**
+     * What to do with due runs that cannot be started because a limit on runs underway has been reached. Default is
+     * {@link KaalDeferralPolicy#WAIT}.
+     * @param deferralPolicy The policy to be set
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withDeferralPolicy(final KaalDeferralPolicy deferralPolicy) {
+        this.deferralPolicy = deferralPolicy;
+        return this;
+    }
+
+    /**
+     * Report metrics for the scheduler. Use {@link KaalDropwizardMetrics} to export to a Dropwizard metric registry.
+     * No metrics are collected by default. For a {@link KaalShardedScheduler} run metrics are reported across
+     * partitions and gauges are reported for every partition with a partition.[index] prefix.
+     * @param metrics Receiver for the metrics
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withMetrics(final KaalMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Deliver completion events through a bounded queue drained by dedicated consumer threads, instead of calling the
+     * handlers on the thread that ran the task. The next run is scheduled before the event is queued, so slow handlers
+     * never delay it. Events are delivered to {@link KaalScheduler#onTaskCompleted()} one by one and to
+     * {@link KaalScheduler#onTaskCompletionBatch()} in batches. For a {@link KaalShardedScheduler} every partition gets
+     * it's own queue and consumers.
+     * @param queueCapacity Maximum number of events waiting for delivery
+     * @param batchSize Maximum number of events delivered in one go
+     * @param consumerThreads Number of threads delivering events
+     * @param overflowPolicy What to do when the queue is full
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withCompletionPipeline(
+            int queueCapacity,
+            int batchSize,
+            int consumerThreads,
+            final KaalOverflowPolicy overflowPolicy) {
+        this.completionPipeline = true;
+        this.completionQueueCapacity = queueCapacity;
+        this.completionBatchSize = batchSize;
+        this.completionConsumers = consumerThreads;
+        this.completionOverflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Codec used to write tasks to snapshots taken using {@link KaalScheduler#snapshot(Path)} and to read them back.
+     * Also set by {@link #withJournal(Path, KaalTaskCodec)}.
+     * @param taskCodec Codec for the tasks
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withTaskCodec(final KaalTaskCodec<T> taskCodec) {
+        this.taskCodec = taskCodec;
+        return this;
+    }
+
+    /**
+     * Write schedule, complete and delete events for runs to an append-only journal in the provided directory, and
+     * recover pending runs from it when the scheduler is started. Runs that were underway when the scheduler went down
+     * are recovered as well, so a run can execute more than once across a crash. Events are forced to disk every 10
+     * ms. The directory must not be shared with another scheduler. For a {@link KaalShardedScheduler} every partition
+     * uses a sub-directory named partition-[index], and the partition count must stay the same across restarts.
+     * @param directory Directory for the journal files. Created if it does not exist.
+     * @param taskCodec Used to write tasks to the journal and read them back
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withJournal(final Path directory, final KaalTaskCodec<T> taskCodec) {
+        return withJournal(directory, taskCodec, DEFAULT_JOURNAL_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Same as {@link #withJournal(Path, KaalTaskCodec)}, with a custom interval at which events are forced to disk.
+     * Events appended within an interval are written to disk together. Events that have not been forced to disk yet
+     * survive a crash of the process, but not of the machine.
+     * @param directory Directory for the journal files. Created if it does not exist.
+     * @param taskCodec Used to write tasks to the journal and read them back
+     * @param flushInterval Interval in milliseconds at which events are forced to disk
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withJournal(
+            final Path directory,
+            final KaalTaskCodec<T> taskCodec,
+            long flushInterval) {
+        this.journalDirectory = directory;
+        this.taskCodec = taskCodec;
+        this.journalFlushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * Queue implementation to be used to hold pending runs. If not provided, a {@link KaalPriorityTaskQueue} is used.
+     * Use {@link KaalTimingWheelTaskQueue} when a very large number of runs are expected to be pending at a time.
+     * @param taskQueueFactory Factory to create the queue. Called once for every scheduler built.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withTaskQueue(final Supplier<KaalTaskQueue<T, R>> taskQueueFactory) {
+        this.taskQueueFactory = taskQueueFactory;
+        return this;
+    }
+
+    /**
+     * Spread out runs that would otherwise be due at the same time by pushing them back by a small amount. Use
+     * {@link KaalJitterPolicy#hashed(long)} to keep the interval between runs of a task unchanged, or
+     * {@link KaalJitterPolicy#random(long)} to spread every run independently. Applies to runs scheduled using
+     * delays, but not to runs scheduled at a fixed time using
+     * {@link KaalScheduler#scheduleAt(KaalTask, java.util.Date)}.
+     * Default is {@link KaalJitterPolicy#NONE}.
+     * @param jitterPolicy Jitter policy
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withJitter(final KaalJitterPolicy jitterPolicy) {
+        this.jitterPolicy = jitterPolicy;
+        return this;
+    }
+
+    /**
+     * Maximum number of runs handed over to the executor in one tick. A tick is one polling interval, in the
+     * {@link KaalDispatchMode#DEADLINE} mode as well. Due runs over the limit stay in the queue and are dispatched in
+     * subsequent ticks, in order of their target execution time. For a {@link KaalShardedScheduler} the limit applies
+     * to every partition. Default is zero, which means unlimited.
+     * @param maxDispatchesPerTick Maximum dispatches per tick
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withMaxDispatchesPerTick(int maxDispatchesPerTick) {
+        this.maxDispatchesPerTick = maxDispatchesPerTick;
+        return this;
+    }
+
+    /**
+     * Limit the rate at which runs of tasks in a group are dispatched, with a burst size of one. See
+     * {@link #withRateLimit(String, double, int)}.
+     * @param group Task group, as returned by {@link KaalTask#group()} or the group extractor
+     * @param runsPerSecond Maximum sustained rate. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withRateLimit(final String group, double runsPerSecond) {
+        return withRateLimit(group, runsPerSecond, 1);
+    }
+
+    /**
+     * Limit the rate at which runs of tasks in a group are dispatched using a token bucket. Due runs over the limit
+     * are not dropped, they are pushed back in the queue to the time at which a permit becomes available. Groups
+     * without a limit are not rate limited. For a {@link KaalShardedScheduler} the limit applies across all
+     * partitions, for a {@link KaalClusteredScheduler} it applies to every node separately.
+     * @param group Task group, as returned by {@link KaalTask#group()} or the group extractor
+     * @param runsPerSecond Maximum sustained rate. Must be positive.
+     * @param burst Number of runs that can be dispatched at once after the group has been idle. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withRateLimit(final String group, double runsPerSecond, int burst) {
+        rateLimits.put(Objects.requireNonNull(group, "Group must be provided"),
+                       new KaalRateLimiter.Limit(runsPerSecond, burst));
+        return this;
+    }
+
+    /**
+     * Policy deciding the order in which due runs are dispatched when the limit on runs underway or a group quota has
+     * been reached. See {@link KaalDispatchPolicy}. Has no effect unless dispatch is limited using
+     * {@link #withMaxInFlight(int)} with the {@link KaalDeferralPolicy#WAIT} deferral policy, or using
+     * {@link #withGroupQuota(String, int)}. If not provided, runs are dispatched in order of their target execution
+     * time. {@link KaalEdfDispatchPolicy} is used if only group quotas are set.
+     * @param dispatchPolicyFactory Factory to create the policy. Called once for every scheduler built.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withDispatchPolicy(
+            final Supplier<KaalDispatchPolicy<T, R>> dispatchPolicyFactory) {
+        this.dispatchPolicyFactory = dispatchPolicyFactory;
+        return this;
+    }
+
+    /**
+     * Maximum number of runs of tasks in a group that can be underway at the same time. Due runs of a group at its
+     * quota wait for a run of the group to complete, without holding up runs of other groups. For a
+     * {@link KaalShardedScheduler} the quota applies to every partition separately.
+     * @param group Task group, as returned by {@link KaalTask#group()} or the group extractor
+     * @param maxInFlight Maximum runs underway for the group. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withGroupQuota(final String group, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Group quota must be positive. Provided: " + maxInFlight);
+        }
+        groupQuotas.put(Objects.requireNonNull(group, "Group must be provided"), maxInFlight);
+        return this;
+    }
+
+    /**
+     * Derive the group of a task for rate limiting, quotas and dispatch policies, instead of using
+     * {@link KaalTask#group()}
+     * @param groupExtractor Function returning the group for a task, or null if the task is not part of any group
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withGroupExtractor(final Function<T, String> groupExtractor) {
+        this.groupExtractor = groupExtractor;
+        return this;
+    }
+
+    /**
+     * Policy for runs dispatched more than the misfire threshold after their target execution time. Can be overridden
+     * for a task using {@link KaalTask#misfirePolicy()}. Default is {@link KaalMisfirePolicy#FIRE_ALL}.
+     * @param misfirePolicy Misfire policy
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withMisfirePolicy(final KaalMisfirePolicy misfirePolicy) {
+        this.misfirePolicy = misfirePolicy;
+        return this;
+    }
+
+    /**
+     * Time after its target execution time beyond which a due run is considered to have misfired. Should be well
+     * above the polling interval. Misfired runs are counted, and handled as per the misfire policy. Default is 60
+     * seconds.
+     * @param misfireThreshold Misfire threshold in milliseconds. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withMisfireThreshold(long misfireThreshold) {
+        if (misfireThreshold <= 0) {
+            throw new IllegalArgumentException("Misfire threshold must be positive. Provided: " + misfireThreshold);
+        }
+        this.misfireThreshold = misfireThreshold;
+        return this;
+    }
+
+    /**
+     * Maximum rate at which misfired runs of tasks with the {@link KaalMisfirePolicy#FIRE_ALL} policy are started, so
+     * that catching up after a stall does not flood the executor. Misfired runs over the rate are put back in the queue
+     * at the next free slot, other runs are not held back. Up to one polling interval worth of runs can be started at
+     * once. For a {@link KaalShardedScheduler} the rate applies to every partition separately. By default, misfired
+     * runs are started as soon as possible.
+     * @param runsPerSecond Maximum rate. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withMisfireCatchUpRate(double runsPerSecond) {
+        if (runsPerSecond <= 0) {
+            throw new IllegalArgumentException("Catch up rate must be positive. Provided: " + runsPerSecond);
+        }
+        this.misfireCatchUpRate = runsPerSecond;
+        return this;
+    }
+
+    /**
+     * Maximum time a run can take, for tasks that do not set {@link KaalTask#runTimeout()}. A run still underway after
+     * this is interrupted, or has its stage cancelled if it is a {@link KaalAsyncTask}, and completes with a
+     * {@link java.util.concurrent.TimeoutException}. Timeouts are tracked on a single timing wheel shared by all
+     * partitions, with one thread to enforce them. A task that ignores interrupts keeps its thread till it returns,
+     * but does not hold up further runs of the task. By default, runs do not time out.
+     * @param runTimeout Timeout in milliseconds. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withRunTimeout(long runTimeout) {
+        if (runTimeout <= 0) {
+            throw new IllegalArgumentException("Run timeout must be positive. Provided: " + runTimeout);
+        }
+        this.runTimeout = runTimeout;
+        return this;
+    }
+
+    /**
+     * Hold back the next run of a task after it fails, for longer with every failure in a row, for example using
+     * {@link KaalBackoffPolicy#exponential(long, long)}. Runs that are due earlier are pushed back to the end of the
+     * backoff. A successful run ends the backoff. Default is {@link KaalBackoffPolicy#NONE}.
+     * @param backoffPolicy Backoff policy
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withBackoff(final KaalBackoffPolicy backoffPolicy) {
+        this.backoffPolicy = backoffPolicy;
+        return this;
+    }
+
+    /**
+     * Pause all tasks in a group once runs of the group fail a number of times in a row, for example while a downstream
+     * system the group calls is down. Due runs of a paused group are pushed back. Once the group has been paused for
+     * the open duration, one run is let through as a probe. If it succeeds the group is resumed, otherwise it stays
+     * paused for another open duration. Runs held back while the probe was underway start by the end of that
+     * duration. For a {@link KaalShardedScheduler} the breaker applies across all partitions, for a
+     * {@link KaalClusteredScheduler} it applies to every node separately.
+     * @param group Task group, as returned by {@link KaalTask#group()} or the group extractor
+     * @param failureThreshold Number of failures in a row that pause the group. Must be positive.
+     * @param openDuration Time in milliseconds for which the group stays paused before a probe. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withCircuitBreaker(
+            final String group,
+            int failureThreshold,
+            long openDuration) {
+        circuitBreakers.put(Objects.requireNonNull(group, "Group must be provided"),
+                            new KaalCircuitBreaker.Settings(failureThreshold, openDuration));
+        return this;
+    }
+
+    /**
+     * Number of partitions to be used by a {@link KaalShardedScheduler} or a {@link KaalClusteredScheduler}. Default is
+     * the number of available processors for the former and 64 for the latter. Ignored by {@link #build()}.
+     * @param partitionCount Number of partitions. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+        return this;
+    }
+
+    /**
+     * Duration for which a {@link KaalClusteredScheduler} node holds the lease for a partition. Leases are renewed
+     * every third of this duration. A failed node's partitions move to other nodes after at most this long.
+     * Default is 10 seconds. Ignored by {@link #build()} and {@link #buildSharded()}.
+     * @param leaseDuration Lease duration in milliseconds. Must be positive.
+     * @return Reference to the builder
+     */
+    public KaalSchedulerBuilder<T,R> withLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+        return this;
+    }
+
     /**
      * Build the scheduler
      * @return instance of {@link KaalScheduler}
      */
     public KaalScheduler<T,R> build() {
+        return build(Objects.requireNonNullElseGet(executorService, this::defaultExecutor),
+                     admissionControl(),
+                     rateLimiter(),
+                     circuitBreaker(),
+                     new KaalRunTimeouts(),
+                     Objects.requireNonNullElse(metrics, KaalMetrics.NOOP),
+                     journalDirectory,
+                     KaalScheduler.DISPATCHER_THREAD_NAME);
+    }
+
+    /**
+     * Build a scheduler that spreads tasks over multiple independent partitions. Each partition has it's own queue and
+     * dispatcher. The executor service is shared between all partitions.
+     * @return instance of {@link KaalShardedScheduler}
+     */
+    public KaalShardedScheduler<T,R> buildSharded() {
+        val partitions = partitionCount(Runtime.getRuntime().availableProcessors());
+        val executor = Objects.requireNonNullElseGet(executorService, this::defaultExecutor);
+        val admissionControl = admissionControl();
+        val rateLimiter = rateLimiter();
+        val circuitBreaker = circuitBreaker();
+        val runTimeouts = new KaalRunTimeouts();
+        return new KaalShardedScheduler<>(IntStream.range(0, partitions)
+                                                  .mapToObj(i -> build(executor,
+                                                                       admissionControl,
+                                                                       rateLimiter,
+                                                                       circuitBreaker,
+                                                                       runTimeouts,
+                                                                       partitionMetrics(i),
+                                                                       partitionJournalDirectory(i),
+                                                                       partitionDispatcherName(i)))
+                                                  .toList());
+    }
+
+    /**
+     * Build a scheduler that runs as one node of a cluster. Tasks are spread over partitions, and every partition is
+     * run by only the node holding the lease for it in the provided lease store. The executor service is shared
+     * between all partitions owned by the node. Journals are not supported, as a partition's pending runs are
+     * recomputed by whichever node picks it up.
+     * @param nodeId Id for this node. Must be unique in the cluster.
+     * @param leaseStore Lease store shared by all nodes in the cluster
+     * @return instance of {@link KaalClusteredScheduler}
+     */
+    public KaalClusteredScheduler<T,R> buildClustered(final String nodeId, final KaalLeaseStore leaseStore) {
+        Objects.requireNonNull(nodeId, "Node id must be provided");
+        Objects.requireNonNull(leaseStore, "Lease store must be provided");
+        if (leaseDuration <= 0) {
+            throw new IllegalArgumentException("Lease duration must be positive. Provided: " + leaseDuration);
+        }
+        if (null != journalDirectory) {
+            throw new IllegalArgumentException("Journal is not supported for clustered schedulers");
+        }
+        val partitions = partitionCount(DEFAULT_CLUSTER_PARTITION_COUNT);
+        val executor = Objects.requireNonNullElseGet(executorService, this::defaultExecutor);
+        val admissionControl = admissionControl();
+        val rateLimiter = rateLimiter();
+        val circuitBreaker = circuitBreaker();
+        val runTimeouts = new KaalRunTimeouts();
+        return new KaalClusteredScheduler<>(nodeId,
+                                            leaseStore,
+                                            leaseDuration,
+                                            partitions,
+                                            i -> build(executor,
+                                                       admissionControl,
+                                                       rateLimiter,
+                                                       circuitBreaker,
+                                                       runTimeouts,
+                                                       partitionMetrics(i),
+                                                       null,
+                                                       partitionDispatcherName(i)));
+    }
+
+    private int partitionCount(int defaultCount) {
+        val partitions = Objects.requireNonNullElse(partitionCount, defaultCount);
+        if (partitions <= 0) {
+            throw new IllegalArgumentException("Partition count must be positive. Provided: " + partitions);
+        }
+        return partitions;
+    }
+
+    private ExecutorService defaultExecutor() {
+        return virtualThreads
+               ? KaalExecutors.virtualThreadExecutor()
+               : KaalExecutors.platformThreadExecutor();
+    }
+
+    private KaalAdmissionControl admissionControl() {
+        return new KaalAdmissionControl(maxInFlight,
+                                        maxInFlightPerTask,
+                                        Objects.requireNonNullElse(deferralPolicy, KaalDeferralPolicy.WAIT));
+    }
+
+    private KaalRateLimiter<T,R> rateLimiter() {
+        return rateLimits.isEmpty()
+               ? null
+               : new KaalRateLimiter<>(groupExtractor(), rateLimits);
+    }
+
+    private KaalCircuitBreaker<T,R> circuitBreaker() {
+        return circuitBreakers.isEmpty()
+               ? null
+               : new KaalCircuitBreaker<>(groupExtractor(), circuitBreakers);
+    }
+
+    private KaalMetrics partitionMetrics(int partition) {
+        return null == metrics || metrics == KaalMetrics.NOOP
+               ? KaalMetrics.NOOP
+               : new KaalPartitionMetrics(metrics, partition);
+    }
+
+    private Path partitionJournalDirectory(int partition) {
+        return null == journalDirectory
+               ? null
+               : journalDirectory.resolve("partition-" + partition);
+    }
+
+    private static String partitionDispatcherName(int partition) {
+        return KaalScheduler.DISPATCHER_THREAD_NAME + "-" + partition;
+    }
+
+    private KaalJournal<T,R> journal(final Path directory) {
+        if (null == directory) {
+            return null;
+        }
+        return new KaalJournal<>(directory,
+                                 Objects.requireNonNull(taskCodec, "A task codec is required to use a journal"),
+                                 JOURNAL_SEGMENT_SIZE,
+                                 journalFlushInterval);
+    }
+
+    private KaalScheduler<T,R> build(
+            final ExecutorService executor,
+            final KaalAdmissionControl admissionControl,
+            final KaalRateLimiter<T,R> rateLimiter,
+            final KaalCircuitBreaker<T,R> circuitBreaker,
+            final KaalRunTimeouts runTimeouts,
+            final KaalMetrics metrics,
+            final Path journalDirectory,
+            final String dispatcherName) {
         return new KaalScheduler<>(pollingInterval <= 0 ? DEFAULT_CHECK_DELAY : pollingInterval,
+                                   Objects.requireNonNullElse(dispatchMode, KaalDispatchMode.POLLING),
+                                   dispatcherName,
                                    Objects.requireNonNullElseGet(taskIdGenerator, KaalRandomTaskRunIdGenerator::new),
                                    Objects.requireNonNullElseGet(stopStrategy, KaalDefaultTaskStopStrategy::new),
-                                   Objects.requireNonNullElseGet(executorService, Executors::newCachedThreadPool));
+                                   executor,
+                                   admissionControl,
+                                   completionPipeline
+                                   ? new KaalCompletionPipeline<>(completionQueueCapacity,
+                                                                  completionBatchSize,
+                                                                  completionConsumers,
+                                                                  Objects.requireNonNullElse(completionOverflowPolicy,
+                                                                                             KaalOverflowPolicy.BLOCK))
+                                   : null,
+                                   metrics,
+                                   taskCodec,
+                                   journal(journalDirectory),
+                                   Objects.requireNonNullElse(jitterPolicy, KaalJitterPolicy.NONE),
+                                   Math.max(0, maxDispatchesPerTick),
+                                   rateLimiter,
+                                   Objects.requireNonNullElse(misfirePolicy, KaalMisfirePolicy.FIRE_ALL),
+                                   misfireThreshold,
+                                   misfireCatchUpRate,
+                                   runTimeout,
+                                   runTimeouts,
+                                   Objects.requireNonNullElse(backoffPolicy, KaalBackoffPolicy.NONE),
+                                   circuitBreaker,
+                                   taskQueue());
+    }
+
+    private KaalTaskQueue<T,R> taskQueue() {
+        val queue = Objects.requireNonNullElse(taskQueueFactory, KaalPriorityTaskQueue<T, R>::new).get();
+        if (null == dispatchPolicyFactory && groupQuotas.isEmpty()) {
+            return queue;
+        }
+        return new KaalDispatchQueue<>(queue,
+                                       Objects.requireNonNullElse(dispatchPolicyFactory,
+                                                                  KaalEdfDispatchPolicy<T, R>::new).get(),
+                                       groupExtractor(),
+                                       groupQuotas);
+    }
+
+    private Function<T, String> groupExtractor() {
+        return Objects.requireNonNullElse(groupExtractor, KaalTask::group);
     }
 }
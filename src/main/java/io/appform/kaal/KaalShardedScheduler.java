@@ -0,0 +1,418 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import io.appform.signals.signals.ConsumingSyncSignal;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * A scheduler that spreads tasks over a set of independent {@link KaalScheduler} partitions. A task is assigned to a
+ * partition based on the hash of {@link KaalTask#id()}, so all runs of a task are handled by the same partition.
+ * Every partition has it's own queue, lock and dispatcher, which removes the single dispatcher bottleneck when a
+ * large number of runs are due at the same time. Use {@link KaalSchedulerBuilder#buildSharded()} to create one.
+ */
+@Slf4j
+public final class KaalShardedScheduler<T extends KaalTask<T, R>, R> {
+    private final List<KaalScheduler<T, R>> partitions;
+
+    private final ConsumingSyncSignal<KaalTaskData<T, R>> taskCompleted = new ConsumingSyncSignal<>();
+    private final ConsumingSyncSignal<List<KaalTaskData<T, R>>> taskCompletionBatch = new ConsumingSyncSignal<>();
+
+    KaalShardedScheduler(List<KaalScheduler<T, R>> partitions) {
+        this.partitions = List.copyOf(partitions);
+        this.partitions.forEach(partition -> {
+            partition.onTaskCompleted().connect(taskCompleted::dispatch);
+            partition.onTaskCompletionBatch().connect(taskCompletionBatch::dispatch);
+        });
+    }
+
+    /**
+     * Start all partitions
+     */
+    public void start() {
+        partitions.forEach(KaalScheduler::start);
+        log.info("Started sharded task scheduler with {} partitions", partitions.size());
+    }
+
+    /**
+     * Stop all partitions
+     */
+    public void stop() {
+        partitions.forEach(KaalScheduler::stop);
+        log.info("Kaal sharded scheduler shut down");
+    }
+
+    /**
+     * Clear all partitions to remove any pending task runs
+     */
+    public void clear() {
+        partitions.forEach(KaalScheduler::clear);
+    }
+
+    /**
+     * Signal that gets invoked when a task run completes on any partition. Handlers are called on the thread that
+     * executed the run. See {@link KaalScheduler#onTaskCompleted()}.
+     *
+     * @return A reference to a synchronized signal
+     */
+    public ConsumingSyncSignal<KaalTaskData<T, R>> onTaskCompleted() {
+        return taskCompleted;
+    }
+
+    /**
+     * Signal that gets invoked with a batch of completed runs from a partition. See
+     * {@link KaalScheduler#onTaskCompletionBatch()}.
+     *
+     * @return A reference to a synchronized signal
+     */
+    public ConsumingSyncSignal<List<KaalTaskData<T, R>>> onTaskCompletionBatch() {
+        return taskCompletionBatch;
+    }
+
+    /**
+     * See {@link KaalScheduler#droppedCompletionCount()}
+     * @return Count of dropped completion events across all partitions
+     */
+    public long droppedCompletionCount() {
+        return partitions.stream().mapToLong(KaalScheduler::droppedCompletionCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#deferredRunCount()}
+     * @return Count of deferred runs across all partitions
+     */
+    public long deferredRunCount() {
+        return partitions.stream().mapToLong(KaalScheduler::deferredRunCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#skippedRunCount()}
+     * @return Count of skipped runs across all partitions
+     */
+    public long skippedRunCount() {
+        return partitions.stream().mapToLong(KaalScheduler::skippedRunCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#rateLimitedRunCount()}
+     * @return Count of rate limited runs across all partitions
+     */
+    public long rateLimitedRunCount() {
+        return partitions.stream().mapToLong(KaalScheduler::rateLimitedRunCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#misfiredRunCount()}
+     * @return Count of misfired runs across all partitions
+     */
+    public long misfiredRunCount() {
+        return partitions.stream().mapToLong(KaalScheduler::misfiredRunCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#timedOutRunCount()}
+     * @return Count of timed out runs across all partitions
+     */
+    public long timedOutRunCount() {
+        return partitions.stream().mapToLong(KaalScheduler::timedOutRunCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#backedOffRunCount()}
+     * @return Count of backed off runs across all partitions
+     */
+    public long backedOffRunCount() {
+        return partitions.stream().mapToLong(KaalScheduler::backedOffRunCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#circuitHeldRunCount()}
+     * @return Count of runs held back by circuit breakers across all partitions
+     */
+    public long circuitHeldRunCount() {
+        return partitions.stream().mapToLong(KaalScheduler::circuitHeldRunCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#nextRun(String)}
+     * @param taskId Id for the task
+     * @return A copy of the earliest pending run for the task, empty if the task has none
+     */
+    public Optional<KaalTaskData<T, R>> nextRun(final String taskId) {
+        return partitionFor(taskId).nextRun(taskId);
+    }
+
+    /**
+     * See {@link KaalScheduler#pendingRuns(String)}
+     * @param taskId Id for the task
+     * @return Copies of the pending runs for the task ordered by target execution time
+     */
+    public List<KaalTaskData<T, R>> pendingRuns(final String taskId) {
+        return partitionFor(taskId).pendingRuns(taskId);
+    }
+
+    /**
+     * See {@link KaalScheduler#pendingCount()}
+     * @return Count of pending runs across all partitions
+     */
+    public int pendingCount() {
+        return partitions.stream().mapToInt(KaalScheduler::pendingCount).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#inFlight()}
+     * @return Count of runs underway across all partitions
+     */
+    public int inFlight() {
+        return partitions.stream().mapToInt(KaalScheduler::inFlight).sum();
+    }
+
+    /**
+     * See {@link KaalScheduler#inFlight(String)}
+     * @param taskId Id for the task
+     * @return Count of runs underway for the task
+     */
+    public int inFlight(final String taskId) {
+        return partitionFor(taskId).inFlight(taskId);
+    }
+
+    /**
+     * See {@link KaalScheduler#earliestDeadline()}
+     * @return Earliest deadline across all partitions, empty if no run in any partition can become due
+     */
+    public Optional<Date> earliestDeadline() {
+        return partitions.stream()
+                .map(KaalScheduler::earliestDeadline)
+                .flatMap(Optional::stream)
+                .min(Comparator.naturalOrder());
+    }
+
+    /**
+     * Number of partitions in this scheduler
+     * @return Partition count
+     */
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * See {@link KaalScheduler#schedule(KaalTask)}
+     *
+     * @param task Task to be scheduled. Must inherit from {@link KaalTask}
+     * @return Returns id for first run
+     */
+    public Optional<String> schedule(final T task) {
+        return partitionFor(task.id()).schedule(task);
+    }
+
+    /**
+     * See {@link KaalScheduler#schedule(KaalTask, Date)}
+     *
+     * @param task     Task to be scheduled. Must inherit from {@link KaalTask}
+     * @param currTime Reference time to be used to calculate subsequent runs
+     * @return Returns id for first run
+     */
+    public Optional<String> schedule(final T task, final Date currTime) {
+        return partitionFor(task.id()).schedule(task, currTime);
+    }
+
+    /**
+     * See {@link KaalScheduler#scheduleAt(KaalTask, Date)}
+     *
+     * @param task     Task to be scheduled. Must inherit from {@link KaalTask}
+     * @param currTime Time for first run.
+     * @return Returns id for first run
+     */
+    public Optional<String> scheduleAt(final T task, final Date currTime) {
+        return partitionFor(task.id()).scheduleAt(task, currTime);
+    }
+
+    /**
+     * See {@link KaalScheduler#scheduleNow(KaalTask)}
+     *
+     * @param task Task to be scheduled. Must inherit from {@link KaalTask}
+     * @return Returns id for first run
+     */
+    public Optional<String> scheduleNow(final T task) {
+        return partitionFor(task.id()).scheduleNow(task);
+    }
+
+    /**
+     * See {@link KaalScheduler#scheduleAll(Collection)}
+     *
+     * @param tasks Tasks to be scheduled. Must inherit from {@link KaalTask}
+     * @return Ids for the first runs, in the same order as the tasks. Empty for tasks that were not scheduled.
+     */
+    public List<Optional<String>> scheduleAll(final Collection<T> tasks) {
+        return scheduleAll(tasks.stream(), new Date());
+    }
+
+    /**
+     * See {@link KaalScheduler#scheduleAll(Stream, Date)}. Tasks are split by partition and every partition gets
+     * one batch.
+     *
+     * @param tasks         Tasks to be scheduled. Must inherit from {@link KaalTask}
+     * @param referenceTime Reference time to be used to calculate first and subsequent runs
+     * @return Ids for the first runs, in the same order as the tasks. Empty for tasks that were not scheduled.
+     */
+    public List<Optional<String>> scheduleAll(final Stream<T> tasks, final Date referenceTime) {
+        val batch = tasks.toList();
+        val partitionTasks = new ArrayList<List<T>>(partitions.size());
+        val partitionPositions = new ArrayList<List<Integer>>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            partitionTasks.add(new ArrayList<>());
+            partitionPositions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            val task = batch.get(i);
+            val partition = partitionIndex(task.id(), partitions.size());
+            partitionTasks.get(partition).add(task);
+            partitionPositions.get(partition).add(i);
+        }
+        val result = new ArrayList<>(Collections.nCopies(batch.size(), Optional.<String>empty()));
+        for (int i = 0; i < partitions.size(); i++) {
+            if (partitionTasks.get(i).isEmpty()) {
+                continue;
+            }
+            val runIds = partitions.get(i).scheduleAll(partitionTasks.get(i).stream(), referenceTime);
+            val positions = partitionPositions.get(i);
+            for (int j = 0; j < positions.size(); j++) {
+                result.set(positions.get(j), runIds.get(j));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * See {@link KaalScheduler#schedule(KaalTask, Date, String)}
+     *
+     * @param task          Task to be scheduled. Must inherit from {@link KaalTask}
+     * @param executionTime Time for first run and the reference time to be used for subsequent runs
+     * @param runId         Unique ID for the current run
+     * @return Returns id for first run
+     */
+    public Optional<String> schedule(final T task, final Date executionTime, final String runId) {
+        return partitionFor(task.id()).schedule(task, executionTime, runId);
+    }
+
+    /**
+     * See {@link KaalScheduler#snapshot(Path)}. Runs from all partitions are written to a single snapshot.
+     * @param path File to write to. Overwritten if it exists.
+     * @return Number of runs written
+     * @throws IOException If the snapshot could not be written
+     */
+    public long snapshot(final Path path) throws IOException {
+        try (val channel = FileChannel.open(path,
+                                            StandardOpenOption.CREATE,
+                                            StandardOpenOption.TRUNCATE_EXISTING,
+                                            StandardOpenOption.WRITE)) {
+            return snapshot(channel);
+        }
+    }
+
+    /**
+     * See {@link KaalScheduler#snapshot(OutputStream)}. Runs from all partitions are written to a single snapshot.
+     * @param stream Stream to write to. Not closed.
+     * @return Number of runs written
+     * @throws IOException If the snapshot could not be written
+     */
+    public long snapshot(final OutputStream stream) throws IOException {
+        return snapshot(Channels.newChannel(stream));
+    }
+
+    /**
+     * See {@link KaalScheduler#restore(Path)}. Runs are spread over partitions the same way tasks are, so the snapshot
+     * can come from a scheduler with a different partition count or from a plain {@link KaalScheduler}.
+     * @param path File to read from
+     * @return Number of runs restored
+     * @throws IOException If the snapshot could not be read or is corrupt. Nothing is restored in this case.
+     */
+    public long restore(final Path path) throws IOException {
+        try (val channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return restore(channel);
+        }
+    }
+
+    /**
+     * See {@link KaalScheduler#restore(InputStream)} and {@link #restore(Path)}
+     * @param stream Stream to read from. Not closed.
+     * @return Number of runs restored
+     * @throws IOException If the snapshot could not be read or is corrupt. Nothing is restored in this case.
+     */
+    public long restore(final InputStream stream) throws IOException {
+        return restore(Channels.newChannel(stream));
+    }
+
+    /**
+     * See {@link KaalScheduler#delete(String)}
+     *
+     * @param id Id for the task to be deleted
+     */
+    public void delete(final String id) {
+        partitionFor(id).delete(id);
+    }
+
+    private long snapshot(final WritableByteChannel channel) throws IOException {
+        val codec = partitions.get(0).requireTaskCodec();
+        val runs = new ArrayList<KaalTaskData<T, R>>();
+        partitions.forEach(partition -> runs.addAll(partition.snapshotRuns()));
+        KaalSnapshot.write(runs, codec, channel);
+        log.info("Wrote snapshot of {} runs from {} partitions", runs.size(), partitions.size());
+        return runs.size();
+    }
+
+    private long restore(final ReadableByteChannel channel) throws IOException {
+        val runs = KaalSnapshot.read(partitions.get(0).requireTaskCodec(), channel);
+        val partitionRuns = new ArrayList<List<KaalTaskData<T, R>>>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            partitionRuns.add(new ArrayList<>());
+        }
+        for (val taskData : runs) {
+            partitionRuns.get(partitionIndex(taskData.getTask().id(), partitions.size())).add(taskData);
+        }
+        for (int i = 0; i < partitions.size(); i++) {
+            partitions.get(i).restore(partitionRuns.get(i));
+        }
+        return runs.size();
+    }
+
+    KaalScheduler<T, R> partitionFor(final String taskId) {
+        return partitions.get(partitionIndex(taskId, partitions.size()));
+    }
+
+    static int partitionIndex(final String taskId, int partitionCount) {
+        val hash = taskId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), partitionCount);
+    }
+}
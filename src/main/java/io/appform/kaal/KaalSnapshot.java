@@ -0,0 +1,209 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes the binary snapshot format used by {@link KaalScheduler#snapshot(java.nio.file.Path)}. A snapshot
+ * is laid out as [magic][version][run count], followed by [deadline][task id][run id][task] for every run and a
+ * crc32c of everything before it. Strings and tasks are written as [length][bytes]. Runs are streamed through a
+ * fixed size buffer, so writing a snapshot needs no memory beyond the encoded form of one task at a time.
+ */
+final class KaalSnapshot {
+    private static final int MAGIC = 0x4B41414C; //KAAL
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private KaalSnapshot() {
+    }
+
+    /**
+     * Write runs to a channel
+     * @param runs Runs to be written
+     * @param codec Codec used to encode tasks
+     * @param channel Channel to write to. Not closed.
+     */
+    static <T extends KaalTask<T, R>, R> void write(
+            final List<KaalTaskData<T, R>> runs,
+            final KaalTaskCodec<T> codec,
+            final WritableByteChannel channel) throws IOException {
+        val writer = new Writer(channel);
+        writer.require(2 * Integer.BYTES + Long.BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(runs.size());
+        for (val taskData : runs) {
+            writer.require(Long.BYTES).putLong(taskData.getTargetExecutionTimeMillis());
+            writer.putBytes(taskData.getTask().id().getBytes(StandardCharsets.UTF_8));
+            writer.putBytes(taskData.getRunId().getBytes(StandardCharsets.UTF_8));
+            writer.putBytes(codec.encode(taskData.getTask()));
+        }
+        writer.finish();
+    }
+
+    /**
+     * Read runs from a channel
+     * @param codec Codec used to decode tasks
+     * @param channel Channel to read from. Not closed.
+     * @return Runs in the order they were written
+     * @throws IOException If the data could not be read or is not a valid snapshot
+     */
+    static <T extends KaalTask<T, R>, R> List<KaalTaskData<T, R>> read(
+            final KaalTaskCodec<T> codec,
+            final ReadableByteChannel channel) throws IOException {
+        val reader = new Reader(channel);
+        var buffer = reader.require(2 * Integer.BYTES + Long.BYTES);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Data is not a Kaal snapshot");
+        }
+        val version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        val count = buffer.getLong();
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid run count " + count + " in snapshot");
+        }
+        val runs = new ArrayList<KaalTaskData<T, R>>((int) count);
+        for (long i = 0; i < count; i++) {
+            val deadline = reader.require(Long.BYTES).getLong();
+            val taskId = new String(reader.getBytes(), StandardCharsets.UTF_8);
+            val runId = new String(reader.getBytes(), StandardCharsets.UTF_8);
+            val task = codec.decode(reader.getBytes());
+            if (!taskId.equals(task.id())) {
+                throw new IOException("Task id " + task.id() + " decoded for run " + runId + " does not match "
+                                              + taskId + " in snapshot");
+            }
+            runs.add(new KaalTaskData<>(runId, task, deadline));
+        }
+        reader.verify();
+        return runs;
+    }
+
+    private static final class Writer {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32C checksum = new CRC32C();
+
+        private Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer require(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void putBytes(final byte[] value) throws IOException {
+            require(Integer.BYTES).putInt(value.length);
+            if (value.length > buffer.capacity()) {
+                flush();
+                write(ByteBuffer.wrap(value));
+                return;
+            }
+            require(value.length).put(value);
+        }
+
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) checksum.getValue()).flip();
+            writeFully(buffer);
+        }
+
+        private void flush() throws IOException {
+            write(buffer.flip());
+            buffer.clear();
+        }
+
+        private void write(final ByteBuffer data) throws IOException {
+            checksum.update(data.duplicate());
+            writeFully(data);
+        }
+
+        private void writeFully(final ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final ReadableByteChannel channel;
+        private final CRC32C checksum = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+        private int checked;
+
+        private Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Make sure the buffer has at least the provided number of bytes available to be read
+         */
+        ByteBuffer require(int length) throws IOException {
+            if (buffer.remaining() >= length) {
+                return buffer;
+            }
+            updateChecksum();
+            buffer.compact();
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(length).put(buffer.flip());
+            }
+            while (buffer.position() < length) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Snapshot ended unexpectedly");
+                }
+            }
+            buffer.flip();
+            checked = 0;
+            return buffer;
+        }
+
+        byte[] getBytes() throws IOException {
+            val length = require(Integer.BYTES).getInt();
+            if (length < 0) {
+                throw new IOException("Invalid length " + length + " in snapshot");
+            }
+            val value = new byte[length];
+            require(length).get(value);
+            return value;
+        }
+
+        void verify() throws IOException {
+            updateChecksum();
+            val expected = (int) checksum.getValue();
+            if (require(Integer.BYTES).getInt() != expected) {
+                throw new IOException("Snapshot checksum does not match, data is corrupt");
+            }
+        }
+
+        private void updateChecksum() {
+            checksum.update(buffer.array(), checked, buffer.position() - checked);
+            checked = buffer.position();
+        }
+    }
+}
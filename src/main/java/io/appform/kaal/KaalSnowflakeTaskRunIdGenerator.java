@@ -0,0 +1,123 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates Snowflake style run ids: 41 bits of milliseconds since 2020-01-01, 10 bits of node id and a 12 bit
+ * sequence, written out as 16 hex digits. Ids from one generator are unique, and ids from generators with different
+ * node ids never collide. Ids are ordered by time at millisecond granularity, and ids generated by one thread are
+ * strictly increasing. Ids generated by different threads in the same millisecond interleave by block rather than in
+ * the order they were generated in.
+ * Sequence numbers are handed out to threads in small blocks using a single compare and set, and every thread then
+ * draws ids from its own block without any coordination. A thread moves to a new block once its block runs out or
+ * the clock moves to the next millisecond. If more than 4096 ids are needed in a millisecond, ids are drawn from the
+ * following milliseconds rather than waiting for the clock, so the time in an id can run slightly ahead under
+ * sustained load. A clock that moves backwards is handled the same way.
+ */
+public class KaalSnowflakeTaskRunIdGenerator<T extends KaalTask<T, R>, R> implements KaalTaskRunIdGenerator<T, R> {
+    /**
+     * 2020-01-01T00:00:00Z
+     */
+    static final long EPOCH = 1_577_836_800_000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final int BLOCK_SIZE = 32;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final class Block {
+        private long next;
+        private long end;
+    }
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    /**
+     * Last reserved value of (time << SEQUENCE_BITS | sequence), exclusive
+     */
+    private final AtomicLong reserved = new AtomicLong();
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * @param nodeId Id for this node, between 0 and 1023. Must be unique across all nodes whose ids need to be unique.
+     */
+    public KaalSnowflakeTaskRunIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    KaalSnowflakeTaskRunIdGenerator(int nodeId, final LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException(
+                    "Node id must be between 0 and " + MAX_NODE_ID + ". Provided: " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public String generateId(T task, Date executionTime) {
+        return nextId();
+    }
+
+    @Override
+    public String generateId(T task, long executionTime) {
+        return nextId();
+    }
+
+    /**
+     * Generate the next id as a number
+     * @return Id with time, node and sequence packed into a long
+     */
+    long nextRawId() {
+        val block = blocks.get();
+        val floor = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+        if (block.next >= block.end || block.next < floor) {
+            reserve(block, floor);
+        }
+        val value = block.next++;
+        val time = value >>> SEQUENCE_BITS;
+        val sequence = value & ((1L << SEQUENCE_BITS) - 1);
+        return (time << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+    }
+
+    private String nextId() {
+        var id = nextRawId();
+        val chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX_DIGITS[(int) (id & 0xF)];
+            id >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    private void reserve(final Block block, long floor) {
+        while (true) {
+            val current = reserved.get();
+            val start = Math.max(current, floor);
+            val end = start + BLOCK_SIZE;
+            if (reserved.compareAndSet(current, end)) {
+                block.next = start;
+                block.end = end;
+                return;
+            }
+        }
+    }
+}
@@ -37,4 +37,50 @@ public interface KaalTask<T extends KaalTask<T, R>, R> extends BiFunction<Date,
      */
     long delayToNextRun(Date currentTime);
 
+    /**
+     * Maximum number of runs of this task that can be underway at the same time. Due runs over the limit are handled
+     * according to the {@link KaalDeferralPolicy} set on the scheduler.
+     * @return Maximum concurrent runs. Zero or negative to use the per-task limit set on the scheduler.
+     */
+    default int maxConcurrentRuns() {
+        return 0;
+    }
+
+    /**
+     * Determines when the next run for this task is scheduled
+     * @return {@link KaalScheduleMode#FIXED_DELAY} by default
+     */
+    default KaalScheduleMode scheduleMode() {
+        return KaalScheduleMode.FIXED_DELAY;
+    }
+
+    /**
+     * Group the task belongs to, for example the downstream system it calls. Rate limits set using
+     * {@link KaalSchedulerBuilder#withRateLimit(String, double, int)} apply to all tasks in a group. Ignored if a
+     * group extractor is set using {@link KaalSchedulerBuilder#withGroupExtractor(java.util.function.Function)}.
+     * @return Group name, null by default, which means the task is not part of any group
+     */
+    default String group() {
+        return null;
+    }
+
+    /**
+     * Determines what happens to a run of this task that is dispatched more than the misfire threshold after its
+     * target execution time
+     * @return Misfire policy. Null by default, to use the policy set on the scheduler.
+     */
+    default KaalMisfirePolicy misfirePolicy() {
+        return null;
+    }
+
+    /**
+     * Maximum time a run of this task can take. A run still underway after this is interrupted, or has its stage
+     * cancelled if it is a {@link KaalAsyncTask}, and completes with a {@link java.util.concurrent.TimeoutException}.
+     * Whether the task is scheduled further is then decided as for any other failed run.
+     * @return Timeout in milliseconds. Zero or negative to use the timeout set on the scheduler.
+     */
+    default long runTimeout() {
+        return 0;
+    }
+
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+/**
+ * Converts tasks to and from bytes so that pending runs can be written to the journal configured using
+ * {@link KaalSchedulerBuilder#withJournal(java.nio.file.Path, KaalTaskCodec)}. Decoding the encoded form of a task
+ * must produce a task with the same id and behaviour. Keep the encoded form small, it is written for every run
+ * that gets scheduled.
+ */
+public interface KaalTaskCodec<T extends KaalTask<T, ?>> {
+
+    /**
+     * Encode a task
+     * @param task Task to be encoded
+     * @return Encoded form of the task
+     */
+    byte[] encode(final T task);
+
+    /**
+     * Decode a task
+     * @param data Bytes returned by {@link #encode(KaalTask)} for the task
+     * @return The task
+     */
+    T decode(final byte[] data);
+}
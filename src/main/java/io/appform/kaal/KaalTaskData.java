@@ -14,16 +14,27 @@
 
 package io.appform.kaal;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.Date;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Data received by the handler connected to {@link KaalScheduler#onTaskCompleted()} signal once a task run is complete.
+ * Times are stored as epoch milliseconds, the {@link Date} based accessors are provided for convenience and allocate a
+ * new object on every call.
  */
 @Data
 public class KaalTaskData<T extends KaalTask<T, R>, R> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<KaalTaskData> COMPLETED
+            = AtomicIntegerFieldUpdater.newUpdater(KaalTaskData.class, "completed");
+
     /**
      * Unique ID for the current run
      */
@@ -35,14 +46,14 @@ public class KaalTaskData<T extends KaalTask<T, R>, R> {
     private final T task;
 
     /**
-     * Time at which task was supposed to be executed
+     * Time at which task was supposed to be executed, in epoch milliseconds
      */
-    private final Date targetExecutionTime;
+    private final long targetExecutionTimeMillis;
 
     /**
-     * Time at which task was actually started
+     * Time at which task was actually started, in epoch milliseconds. Zero if the run has not started yet.
      */
-    private Date actualStartTime;
+    private long actualStartTimeMillis;
 
     /**
      * Result of the task run
@@ -54,11 +65,116 @@ public class KaalTaskData<T extends KaalTask<T, R>, R> {
      */
     private Throwable exception;
 
+    /**
+     * Handle to the entry for this run inside the {@link KaalTaskQueue} holding it, if the queue needs one
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Object queueHandle;
+
+    /**
+     * Jitter added to the target execution time by the {@link KaalJitterPolicy} set on the scheduler, along with any
+     * time the run was held back to keep within the misfire catch up rate. Taken out when lining up the next run.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long jitterMillis;
+
+    /**
+     * Whether a rate limit permit has already been taken for this run
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean rateLimitPermitted;
+
+    /**
+     * Whether this run has been found to have missed its target execution time by more than the misfire threshold
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean misfired;
+
+    /**
+     * Whether a slot within the misfire catch up rate has already been reserved for this run
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean catchUpPermitted;
+
+    /**
+     * Deadline for the run, if it has a timeout
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile KaalRunTimeouts.Timeout timeout;
+
+    /**
+     * Set once the outcome of the run has been decided, either by the run returning or by it timing out
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private volatile int completed;
+
+    public KaalTaskData(String runId, T task, long targetExecutionTimeMillis) {
+        this.runId = runId;
+        this.task = task;
+        this.targetExecutionTimeMillis = targetExecutionTimeMillis;
+    }
+
+    public KaalTaskData(String runId, T task, Date targetExecutionTime) {
+        this(runId, task, targetExecutionTime.getTime());
+    }
+
+    /**
+     * Time at which task was supposed to be executed
+     * @return A new {@link Date} for the target execution time
+     */
+    public Date getTargetExecutionTime() {
+        return new Date(targetExecutionTimeMillis);
+    }
+
+    /**
+     * Time at which task was actually started
+     * @return A new {@link Date} for the actual start time, null if the run has not started yet
+     */
+    public Date getActualStartTime() {
+        return actualStartTimeMillis == 0 ? null : new Date(actualStartTimeMillis);
+    }
+
+    public KaalTaskData<T, R> setActualStartTime(Date actualStartTime) {
+        this.actualStartTimeMillis = null == actualStartTime ? 0 : actualStartTime.getTime();
+        return this;
+    }
+
+    /**
+     * Claim the right to complete this run. Only the first caller succeeds, so a run that returns after it has timed
+     * out is not completed a second time.
+     * @return True if the caller is the first to complete the run
+     */
+    boolean markCompleted() {
+        return COMPLETED.compareAndSet(this, 0, 1);
+    }
+
     /**
      * Calculate the drift between expected and the actual start time
      * @return The time drift in milliseconds
      */
     public long drift() {
-        return Objects.requireNonNullElse(actualStartTime, new Date()).getTime() - targetExecutionTime.getTime();
+        return (actualStartTimeMillis == 0 ? System.currentTimeMillis() : actualStartTimeMillis)
+                - targetExecutionTimeMillis;
     }
 }
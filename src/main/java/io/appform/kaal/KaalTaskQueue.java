@@ -0,0 +1,78 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Collection;
+
+/**
+ * Holds pending task runs ordered by their target execution time. Implementations need not be thread safe,
+ * {@link KaalScheduler} serialises all access to the queue.
+ */
+public interface KaalTaskQueue<T extends KaalTask<T, R>, R> {
+
+    /**
+     * Add a run to the queue
+     * @param taskData Data for the run to be queued
+     */
+    void put(final KaalTaskData<T, R> taskData);
+
+    /**
+     * Add a batch of runs to the queue. Implementations can override this to build the queue in bulk.
+     * @param taskData Data for the runs to be queued
+     */
+    default void putAll(final Collection<KaalTaskData<T, R>> taskData) {
+        taskData.forEach(this::put);
+    }
+
+    /**
+     * Remove and return a run that is due for execution
+     * @param currentTime Current time in epoch milliseconds
+     * @return A run with target execution time at or before current time, or null if no such run exists
+     */
+    KaalTaskData<T, R> pollDue(long currentTime);
+
+    /**
+     * Earliest time at which a run in the queue can become due. No run will become due before this time.
+     * @return Time in epoch milliseconds, or {@link Long#MAX_VALUE} if the queue is empty
+     */
+    long nextDueTime();
+
+    /**
+     * Target execution time of the earliest run in the queue. Unlike {@link #nextDueTime()}, this is never earlier than
+     * the run itself. Implementations where {@link #nextDueTime()} is exact need not override this.
+     * @return Time in epoch milliseconds, or {@link Long#MAX_VALUE} if the queue is empty
+     */
+    default long earliestDeadline() {
+        return nextDueTime();
+    }
+
+    /**
+     * Remove a run from the queue
+     * @param taskData Data for the run to be removed
+     * @return True if the run was present in the queue, false otherwise
+     */
+    boolean remove(final KaalTaskData<T, R> taskData);
+
+    /**
+     * Number of runs in the queue
+     * @return Count of pending runs
+     */
+    int size();
+
+    /**
+     * Remove all runs from the queue
+     */
+    void clear();
+}
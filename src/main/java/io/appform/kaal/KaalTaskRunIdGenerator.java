@@ -14,7 +14,11 @@
 
 package io.appform.kaal;
 
+import lombok.val;
+
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Generates run id for a task run
@@ -28,4 +32,30 @@ public interface KaalTaskRunIdGenerator<T extends KaalTask<T, R>, R> {
      * @return A unique string id for this run
      */
     String generateId(final T task, Date executionTime);
+
+    /**
+     * Return a unique Id for a task run. Called by the scheduler when rescheduling a task. Implementations that do not
+     * use the execution time should override this to avoid allocating a {@link Date} for every run.
+     * @param task reference to the task being run
+     * @param executionTime time in epoch milliseconds at which task is supposed to be executed
+     * @return A unique string id for this run
+     */
+    default String generateId(final T task, long executionTime) {
+        return generateId(task, new Date(executionTime));
+    }
+
+    /**
+     * Return unique Ids for a batch of task runs. Used when tasks are scheduled in bulk. Implementations can override
+     * this if ids can be generated more efficiently in a batch.
+     * @param tasks references to the tasks being run
+     * @param executionTimes times at which the tasks are supposed to be executed, in the same order as the tasks
+     * @return Unique string ids for the runs, in the same order as the tasks
+     */
+    default List<String> generateIds(final List<T> tasks, final List<Date> executionTimes) {
+        val ids = new ArrayList<String>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            ids.add(generateId(tasks.get(i), executionTimes.get(i)));
+        }
+        return ids;
+    }
 }
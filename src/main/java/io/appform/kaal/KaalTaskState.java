@@ -0,0 +1,195 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.val;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Book-keeping for a task that has runs pending in the queue or underway. Lives as long as the task has either.
+ * Not thread safe, {@link KaalScheduler} guards this with the same lock as the queue.
+ */
+final class KaalTaskState<T extends KaalTask<T, R>, R> {
+    @Getter
+    private final String taskId;
+
+    /**
+     * Runs for this task that are currently in the queue or waiting for a run underway to complete, ordered by target
+     * execution time
+     */
+    @Getter
+    private final List<KaalTaskData<T, R>> pendingRuns = new ArrayList<>(1);
+
+    /**
+     * Runs that have been dispatched but not completed yet. Created on first use.
+     */
+    private List<KaalTaskData<T, R>> runsUnderway;
+
+    /**
+     * Due runs held back by the per-task limit, in the order they became due. Created on first use.
+     */
+    private Deque<KaalTaskData<T, R>> waitingRuns;
+
+    /**
+     * Set when the task is deleted while runs are underway. Completing runs will not schedule further runs.
+     */
+    @Getter
+    @Setter
+    private boolean deleted;
+
+    /**
+     * Number of runs that have failed in a row
+     */
+    @Getter
+    private int consecutiveFailures;
+
+    /**
+     * Time in epoch milliseconds before which runs are held back after failures, zero if they are not
+     */
+    @Getter
+    private long backoffUntil;
+
+    KaalTaskState(String taskId) {
+        this.taskId = taskId;
+    }
+
+    /**
+     * Add a run, keeping runs ordered by target execution time. Runs with the same target time stay in the order they
+     * were added in. Usually a task has a single pending run, so this is an append.
+     */
+    void addPendingRun(final KaalTaskData<T, R> taskData) {
+        val targetTime = taskData.getTargetExecutionTimeMillis();
+        var index = pendingRuns.size();
+        while (index > 0 && pendingRuns.get(index - 1).getTargetExecutionTimeMillis() > targetTime) {
+            index--;
+        }
+        pendingRuns.add(index, taskData);
+    }
+
+    void removePendingRun(final KaalTaskData<T, R> taskData) {
+        for (int i = firstRunAtOrAfter(taskData.getTargetExecutionTimeMillis()); i < pendingRuns.size(); i++) {
+            if (pendingRuns.get(i) == taskData) {
+                pendingRuns.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pending run with the earliest target execution time
+     * @return Earliest pending run, null if there is none
+     */
+    KaalTaskData<T, R> getEarliestPendingRun() {
+        return pendingRuns.isEmpty() ? null : pendingRuns.get(0);
+    }
+
+    private int firstRunAtOrAfter(long targetTime) {
+        var low = 0;
+        var high = pendingRuns.size();
+        while (low < high) {
+            val mid = (low + high) >>> 1;
+            if (pendingRuns.get(mid).getTargetExecutionTimeMillis() < targetTime) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    void addWaitingRun(final KaalTaskData<T, R> taskData) {
+        if (null == waitingRuns) {
+            waitingRuns = new ArrayDeque<>();
+        }
+        waitingRuns.add(taskData);
+    }
+
+    KaalTaskData<T, R> pollWaitingRun() {
+        return null == waitingRuns ? null : waitingRuns.poll();
+    }
+
+    /**
+     * Drop all waiting runs
+     * @return Number of runs dropped
+     */
+    int clearWaitingRuns() {
+        if (null == waitingRuns) {
+            return 0;
+        }
+        val cleared = waitingRuns.size();
+        waitingRuns.clear();
+        return cleared;
+    }
+
+    void runStarted(final KaalTaskData<T, R> taskData) {
+        if (null == runsUnderway) {
+            runsUnderway = new ArrayList<>(1);
+        }
+        runsUnderway.add(taskData);
+    }
+
+    void runFinished(final KaalTaskData<T, R> taskData) {
+        if (null != runsUnderway) {
+            for (int i = 0; i < runsUnderway.size(); i++) {
+                if (runsUnderway.get(i) == taskData) {
+                    runsUnderway.remove(i);
+                    break;
+                }
+            }
+        }
+        if (getInFlight() == 0) {
+            deleted = false;
+        }
+    }
+
+    /**
+     * Record a failed run and hold back further runs
+     * @param backoffUntil Time in epoch milliseconds before which runs are held back
+     */
+    void runFailed(long backoffUntil) {
+        consecutiveFailures++;
+        this.backoffUntil = backoffUntil;
+    }
+
+    /**
+     * Record a successful run, which ends any backoff
+     */
+    void runSucceeded() {
+        consecutiveFailures = 0;
+        backoffUntil = 0;
+    }
+
+    /**
+     * Number of runs that have been dispatched but not completed yet
+     */
+    int getInFlight() {
+        return null == runsUnderway ? 0 : runsUnderway.size();
+    }
+
+    List<KaalTaskData<T, R>> getRunsUnderway() {
+        return null == runsUnderway ? List.of() : runsUnderway;
+    }
+
+    boolean isIdle() {
+        return getInFlight() == 0 && pendingRuns.isEmpty();
+    }
+}
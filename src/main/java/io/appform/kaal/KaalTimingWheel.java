@@ -0,0 +1,295 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+/**
+ * A hierarchical timing wheel with millisecond ticks. Each level has 64 slots, and an item lives on the highest level
+ * at which its deadline differs from the current wheel time. Items cascade down a level whenever the wheel time
+ * reaches their slot, so every item moves at most {@link #LEVELS} times before it expires. Add and remove are O(1),
+ * expiry is amortized O(1). Occupancy bitmaps let the wheel jump over empty slots, so idle periods cost nothing.
+ * Not thread safe.
+ */
+final class KaalTimingWheel<E> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+    private static final int DUE_BUCKET = LEVELS * SLOTS;
+    private static final int DETACHED = -1;
+
+    /**
+     * Handle to an item in the wheel
+     */
+    static final class Node<E> {
+        private final KaalTimingWheel<E> wheel;
+        private final E item;
+        private final long deadline;
+        private Node<E> prev;
+        private Node<E> next;
+        private int bucket = DETACHED;
+
+        private Node(KaalTimingWheel<E> wheel, E item, long deadline) {
+            this.wheel = wheel;
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        E item() {
+            return item;
+        }
+
+        long deadline() {
+            return deadline;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private final Node<E>[] heads = (Node<E>[]) new Node<?>[DUE_BUCKET + 1];
+    private final long[] occupied = new long[LEVELS];
+    private Node<E> dueTail;
+    private Node<E> earliest; //Item with the earliest deadline, null if it needs to be looked up again
+    private long now;
+    private int size;
+
+    KaalTimingWheel(long startTime) {
+        this.now = startTime;
+    }
+
+    /**
+     * Add an item to the wheel
+     * @param item Item to be added
+     * @param deadline Time in epoch milliseconds at which the item expires
+     * @return Handle that can be used to remove the item
+     */
+    Node<E> add(final E item, long deadline) {
+        val node = new Node<>(this, item, deadline);
+        place(node);
+        if (size == 0 || (null != earliest && deadline < earliest.deadline)) {
+            earliest = node;
+        }
+        size++;
+        return node;
+    }
+
+    /**
+     * Remove an item from the wheel
+     * @param node Handle returned by {@link #add(Object, long)}
+     * @return True if the item was present in the wheel
+     */
+    boolean remove(final Node<E> node) {
+        if (null == node || node.wheel != this || node.bucket == DETACHED) {
+            return false;
+        }
+        unlink(node);
+        size--;
+        if (node == earliest) {
+            earliest = null;
+        }
+        return true;
+    }
+
+    /**
+     * Advance the wheel to the provided time and return an expired item if any
+     * @param currentTime Current time in epoch milliseconds
+     * @return Handle for an item with deadline at or before wheel time, null if there is none
+     */
+    Node<E> pollExpired(long currentTime) {
+        advance(currentTime);
+        val node = heads[DUE_BUCKET];
+        if (null == node) {
+            return null;
+        }
+        unlink(node);
+        size--;
+        if (node == earliest) {
+            earliest = null;
+        }
+        return node;
+    }
+
+    /**
+     * Earliest time at which the wheel needs to be advanced. Items are guaranteed not to expire before this.
+     * @return Time in epoch milliseconds, or {@link Long#MAX_VALUE} if the wheel is empty
+     */
+    long nextEventTime() {
+        if (null != heads[DUE_BUCKET]) {
+            return now;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            val slot = nextSlot(level);
+            if (slot >= 0) {
+                return slotTime(level, slot);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Earliest deadline among the items in the wheel. Unlike {@link #nextEventTime()} this is the deadline of an actual
+     * item. It is tracked as items are added, and looked up again from the earliest occupied bucket only after the
+     * item holding it is removed.
+     * @return Time in epoch milliseconds, or {@link Long#MAX_VALUE} if the wheel is empty
+     */
+    long earliestDeadline() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (null == earliest) {
+            earliest = findEarliest();
+        }
+        return earliest.deadline;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (int i = 0; i < heads.length; i++) {
+            var node = heads[i];
+            while (null != node) {
+                val next = node.next;
+                node.prev = null;
+                node.next = null;
+                node.bucket = DETACHED;
+                node = next;
+            }
+            heads[i] = null;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            occupied[level] = 0;
+        }
+        dueTail = null;
+        earliest = null;
+        size = 0;
+    }
+
+    private Node<E> findEarliest() {
+        //Items in lower buckets always expire before items in higher ones, so the earliest item is in the first bucket
+        var bucket = DUE_BUCKET;
+        for (int level = 0; level < LEVELS && null == heads[bucket]; level++) {
+            val slot = nextSlot(level);
+            if (slot >= 0) {
+                bucket = level * SLOTS + slot;
+            }
+        }
+        var found = heads[bucket];
+        for (var node = found; null != node; node = node.next) {
+            if (node.deadline < found.deadline) {
+                found = node;
+            }
+        }
+        return found;
+    }
+
+    private void advance(long currentTime) {
+        while (true) {
+            int level = 0;
+            int slot = -1;
+            while (level < LEVELS && (slot = nextSlot(level)) < 0) {
+                level++;
+            }
+            if (slot < 0) {
+                break;
+            }
+            val eventTime = slotTime(level, slot);
+            if (eventTime > currentTime) {
+                break;
+            }
+            now = eventTime;
+            cascade(level * SLOTS + slot);
+        }
+        if (currentTime > now) {
+            now = currentTime;
+        }
+    }
+
+    private void cascade(int bucket) {
+        var node = heads[bucket];
+        heads[bucket] = null;
+        occupied[bucket / SLOTS] &= ~(1L << (bucket & SLOT_MASK));
+        while (null != node) {
+            val next = node.next;
+            node.prev = null;
+            node.next = null;
+            place(node);
+            node = next;
+        }
+    }
+
+    private void place(final Node<E> node) {
+        val deadline = node.deadline;
+        if (deadline <= now) {
+            node.bucket = DUE_BUCKET;
+            node.prev = dueTail;
+            if (null == dueTail) {
+                heads[DUE_BUCKET] = node;
+            }
+            else {
+                dueTail.next = node;
+            }
+            dueTail = node;
+            return;
+        }
+        val level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(deadline ^ now)) / SLOT_BITS;
+        val slot = (int) (deadline >>> (level * SLOT_BITS)) & SLOT_MASK;
+        val bucket = level * SLOTS + slot;
+        val head = heads[bucket];
+        node.bucket = bucket;
+        node.next = head;
+        if (null != head) {
+            head.prev = node;
+        }
+        heads[bucket] = node;
+        occupied[level] |= 1L << slot;
+    }
+
+    private void unlink(final Node<E> node) {
+        val bucket = node.bucket;
+        if (null == node.prev) {
+            heads[bucket] = node.next;
+        }
+        else {
+            node.prev.next = node.next;
+        }
+        if (null != node.next) {
+            node.next.prev = node.prev;
+        }
+        else if (bucket == DUE_BUCKET) {
+            dueTail = node.prev;
+        }
+        if (bucket != DUE_BUCKET && null == heads[bucket]) {
+            occupied[bucket / SLOTS] &= ~(1L << (bucket & SLOT_MASK));
+        }
+        node.prev = null;
+        node.next = null;
+        node.bucket = DETACHED;
+    }
+
+    private int nextSlot(int level) {
+        val digit = (int) (now >>> (level * SLOT_BITS)) & SLOT_MASK;
+        val pending = occupied[level] & (-2L << digit);
+        return pending == 0 ? -1 : Long.numberOfTrailingZeros(pending);
+    }
+
+    private long slotTime(int level, int slot) {
+        val shift = level * SLOT_BITS;
+        val upperShift = shift + SLOT_BITS;
+        val upper = upperShift >= Long.SIZE ? 0L : (now >>> upperShift) << upperShift;
+        return upper | ((long) slot << shift);
+    }
+}
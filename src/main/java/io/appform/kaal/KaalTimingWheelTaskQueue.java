@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+/**
+ * A {@link KaalTaskQueue} backed by a hierarchical timing wheel with millisecond resolution. Insertion, expiry and
+ * removal are amortized O(1), which makes this a better fit than {@link KaalPriorityTaskQueue} when a very large
+ * number of runs are pending. Runs with the same target time are not guaranteed to expire in insertion order.
+ */
+public class KaalTimingWheelTaskQueue<T extends KaalTask<T, R>, R> implements KaalTaskQueue<T, R> {
+
+    private final KaalTimingWheel<KaalTaskData<T, R>> wheel;
+
+    public KaalTimingWheelTaskQueue() {
+        this(System.currentTimeMillis());
+    }
+
+    KaalTimingWheelTaskQueue(long startTime) {
+        this.wheel = new KaalTimingWheel<>(startTime);
+    }
+
+    @Override
+    public void put(KaalTaskData<T, R> taskData) {
+        taskData.setQueueHandle(wheel.add(taskData, taskData.getTargetExecutionTimeMillis()));
+    }
+
+    @Override
+    public KaalTaskData<T, R> pollDue(long currentTime) {
+        val node = wheel.pollExpired(currentTime);
+        if (null == node) {
+            return null;
+        }
+        val taskData = node.item();
+        taskData.setQueueHandle(null);
+        return taskData;
+    }
+
+    @Override
+    public long nextDueTime() {
+        return wheel.nextEventTime();
+    }
+
+    @Override
+    public long earliestDeadline() {
+        return wheel.earliestDeadline();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(KaalTaskData<T, R> taskData) {
+        if (!(taskData.getQueueHandle() instanceof KaalTimingWheel.Node<?> node)) {
+            return false;
+        }
+        val removed = wheel.remove((KaalTimingWheel.Node<KaalTaskData<T, R>>) node);
+        if (removed) {
+            taskData.setQueueHandle(null);
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return wheel.size();
+    }
+
+    @Override
+    public void clear() {
+        wheel.clear();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Map;
+
+/**
+ * Weighted fair queueing across groups. While runs of multiple groups are waiting, every group gets a share of the
+ * dispatches proportional to its weight, irrespective of how many runs it has waiting. A group with a handful of tasks
+ * is therefore not starved by another with thousands. Groups without a weight have a weight of one.
+ * Every group carries a virtual time that advances by the inverse of its weight on every dispatch, and the group with
+ * the lowest virtual time goes next. A group that has had no waiting runs starts at the current virtual time, so idle
+ * periods do not earn it any credit.
+ */
+public final class KaalWeightedFairDispatchPolicy<T extends KaalTask<T, R>, R>
+        extends KaalGroupedDispatchPolicy<T, R> {
+    private final Map<String, Integer> weights;
+    private double virtualTime;
+
+    /**
+     * @param weights Weight for every group, keyed by group. Must be positive.
+     */
+    public KaalWeightedFairDispatchPolicy(final Map<String, Integer> weights) {
+        weights.forEach((group, weight) -> {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight for group " + group + " must be positive");
+            }
+        });
+        this.weights = Map.copyOf(weights);
+    }
+
+    @Override
+    boolean precedes(Group<T, R> group, Group<T, R> other) {
+        return group.pass < other.pass || (group.pass == other.pass && group.headTime() < other.headTime());
+    }
+
+    @Override
+    void activated(Group<T, R> group) {
+        group.stride = 1.0 / weights.getOrDefault(group.name, 1);
+        group.pass = virtualTime;
+    }
+
+    @Override
+    void dispatched(Group<T, R> group) {
+        virtualTime = group.pass;
+        group.pass += group.stride;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An asynchronous task that completes after a while without holding a thread
+ */
+public class AsyncTestTask implements KaalAsyncTask<AsyncTestTask, String> {
+    @Getter
+    private final int index;
+    private final long delay;
+    private final long runTime;
+    private final boolean fail;
+
+    public AsyncTestTask(int index, long delay, long runTime, boolean fail) {
+        this.index = index;
+        this.delay = delay;
+        this.runTime = runTime;
+        this.fail = fail;
+    }
+
+    @Override
+    public String id() {
+        return "ASYNC_TEST_TASK_" + index;
+    }
+
+    @Override
+    public long delayToNextRun(Date currentTime) {
+        return delay;
+    }
+
+    @Override
+    public CompletionStage<String> applyAsync(Date currentTime, KaalTaskData<AsyncTestTask, String> taskData) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (fail) {
+                throw new IllegalStateException("Forced failure");
+            }
+            return taskData.getRunId();
+        }, CompletableFuture.delayedExecutor(runTime, TimeUnit.MILLISECONDS));
+    }
+}
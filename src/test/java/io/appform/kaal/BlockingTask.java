@@ -0,0 +1,63 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A task that blocks for a while and keeps track of how many of it's runs are underway at the same time
+ */
+public class BlockingTask implements KaalTask<BlockingTask, String> {
+    private final int index;
+    private final long delay;
+    private final long runTime;
+    private final AtomicInteger running;
+    private final AtomicInteger maxRunning;
+
+    public BlockingTask(int index, long delay, long runTime, AtomicInteger running, AtomicInteger maxRunning) {
+        this.index = index;
+        this.delay = delay;
+        this.runTime = runTime;
+        this.running = running;
+        this.maxRunning = maxRunning;
+    }
+
+    @Override
+    public String id() {
+        return "BLOCKING_TASK_" + index;
+    }
+
+    @Override
+    public long delayToNextRun(Date currentTime) {
+        return delay;
+    }
+
+    @Override
+    @SuppressWarnings("java:S2925")
+    public String apply(Date date, KaalTaskData<BlockingTask, String> taskData) {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(runTime);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            running.decrementAndGet();
+        }
+        return taskData.getRunId();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class KaalCircuitBreakerTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void testCircuit() {
+        val breaker = new KaalCircuitBreaker<TestTask, String>(
+                task -> task.getIndex() < 10 ? "api" : null,
+                Map.of("api", new KaalCircuitBreaker.Settings(3, 1_000)));
+        val task = new TestTask(0, 100);
+        assertEquals(START, breaker.permit(task, START));
+        assertFalse(breaker.record(task, true, START));
+        assertFalse(breaker.record(task, true, START));
+        assertFalse(breaker.record(task, false, START)); //Success resets the count
+        assertFalse(breaker.record(task, true, START));
+        assertFalse(breaker.record(task, true, START));
+        assertTrue(breaker.record(task, true, START + 10));
+        assertTrue(breaker.isOpen("api"));
+
+        //Held back while open, then a single probe goes through
+        assertEquals(START + 1_010, breaker.permit(new TestTask(1, 100), START + 500));
+        assertEquals(START + 1_010, breaker.permit(task, START + 1_010));
+        assertEquals(START + 2_010, breaker.permit(new TestTask(2, 100), START + 1_010));
+        //Failed probe keeps it open for another open duration
+        assertFalse(breaker.record(task, true, START + 1_100));
+        assertEquals(START + 2_100, breaker.permit(task, START + 2_000));
+        assertEquals(START + 2_100, breaker.permit(task, START + 2_100));
+        //Successful probe closes it
+        assertFalse(breaker.record(task, false, START + 2_200));
+        assertFalse(breaker.isOpen("api"));
+        assertEquals(START + 2_200, breaker.permit(new TestTask(3, 100), START + 2_200));
+
+        //Tasks outside configured groups are never held back
+        val other = new TestTask(10, 100);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(breaker.record(other, true, START));
+        }
+        assertEquals(START, breaker.permit(other, START));
+        assertThrows(IllegalArgumentException.class, () -> new KaalCircuitBreaker.Settings(0, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> new KaalCircuitBreaker.Settings(1, 0));
+    }
+
+    @Test
+    void testExponentialBackoff() {
+        val noJitter = KaalBackoffPolicy.exponential(100, 1_000, 0);
+        assertEquals(100, noJitter.backoff(1));
+        assertEquals(200, noJitter.backoff(2));
+        assertEquals(800, noJitter.backoff(4));
+        assertEquals(1_000, noJitter.backoff(5));
+        assertEquals(1_000, noJitter.backoff(Integer.MAX_VALUE));
+
+        val jittered = KaalBackoffPolicy.exponential(100, 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            val backoff = jittered.backoff(3);
+            assertTrue(backoff > 200 && backoff <= 400, "Backoff: " + backoff);
+        }
+        assertThrows(IllegalArgumentException.class, () -> KaalBackoffPolicy.exponential(0, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> KaalBackoffPolicy.exponential(100, 50));
+        assertThrows(IllegalArgumentException.class, () -> KaalBackoffPolicy.exponential(100, 1_000, 1.5));
+    }
+}
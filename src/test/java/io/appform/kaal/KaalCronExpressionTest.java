@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ */
+class KaalCronExpressionTest {
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    @Test
+    void testNextFireTime() {
+        assertNext("*/15 * * * *", "2026-10-16T10:07:30Z", "2026-10-16T10:15:00Z");
+        assertNext("*/15 * * * *", "2026-10-16T10:15:00Z", "2026-10-16T10:30:00Z");
+        assertNext("30 * * * * *", "2026-10-16T10:07:30.500Z", "2026-10-16T10:08:30Z");
+        assertNext("0 9 * * MON-FRI", "2026-10-16T10:00:00Z", "2026-10-19T09:00:00Z");
+        assertNext("0 0 29 2 *", "2026-03-01T00:00:00Z", "2028-02-29T00:00:00Z");
+        assertNext("0 0 31 * *", "2026-04-01T00:00:00Z", "2026-05-31T00:00:00Z");
+        assertNext("0 0 13 * FRI", "2026-10-14T00:00:00Z", "2026-10-16T00:00:00Z"); //Either day field can match
+        assertNext("0 0 * * 7", "2026-10-14T00:00:00Z", "2026-10-18T00:00:00Z");
+        assertNext("0 12 1-7/3 jan,jul ?", "2026-07-02T00:00:00Z", "2026-07-04T12:00:00Z");
+        assertNext("@hourly", "2026-12-31T23:59:59Z", "2027-01-01T00:00:00Z");
+        assertEquals(KaalCronExpression.NEVER,
+                     KaalCronExpression.parse("0 0 30 2 *", ZoneOffset.UTC).nextFireTime(millis("2026-01-01T00:00:00Z")));
+    }
+
+    @Test
+    void testTimeZones() {
+        val cron = KaalCronExpression.parse("0 9 * * *", ZoneId.of("Asia/Kolkata"));
+        assertEquals(millis("2026-10-17T03:30:00Z"), cron.nextFireTime(millis("2026-10-16T04:00:00Z")));
+
+        //02:30 does not exist on the day daylight saving starts, so the run moves forward by an hour
+        val springForward = KaalCronExpression.parse("30 2 * * *", NEW_YORK);
+        assertEquals(millis("2026-03-08T07:30:00Z"), springForward.nextFireTime(millis("2026-03-08T05:00:00Z")));
+        assertEquals(millis("2026-03-09T06:30:00Z"), springForward.nextFireTime(millis("2026-03-08T07:30:00Z")));
+
+        //01:30 happens twice on the day daylight saving ends, but the run happens only once
+        val fallBack = KaalCronExpression.parse("30 1 * * *", NEW_YORK);
+        assertEquals(millis("2026-11-01T05:30:00Z"), fallBack.nextFireTime(millis("2026-11-01T04:00:00Z")));
+        assertEquals(millis("2026-11-02T06:30:00Z"), fallBack.nextFireTime(millis("2026-11-01T05:30:00Z")));
+        assertEquals(millis("2026-11-02T06:30:00Z"), fallBack.nextFireTime(millis("2026-11-01T06:10:00Z")));
+    }
+
+    @Test
+    void testAgainstCalendar() {
+        val random = new Random(42);
+        checkAgainstCalendar("*/7 */5 * * *", t -> t.getMinute() % 7 == 0 && t.getHour() % 5 == 0, random);
+        checkAgainstCalendar("15 10-14 * * SAT,SUN",
+                             t -> t.getMinute() == 15 && t.getHour() >= 10 && t.getHour() <= 14
+                                     && t.getDayOfWeek().getValue() >= DayOfWeek.SATURDAY.getValue(),
+                             random);
+        checkAgainstCalendar("0 0 1,15 * WED",
+                             t -> t.getMinute() == 0 && t.getHour() == 0
+                                     && (t.getDayOfMonth() == 1 || t.getDayOfMonth() == 15
+                                     || t.getDayOfWeek() == DayOfWeek.WEDNESDAY),
+                             random);
+    }
+
+    @Test
+    void testDelayToNextRun() {
+        val cron = KaalCronExpression.parse("0 * * * *", ZoneOffset.UTC);
+        assertEquals(60_000, cron.delayToNextRun(new Date(millis("2026-10-16T10:59:00Z"))));
+        assertEquals(-1, KaalCronExpression.parse("0 0 31 4 *").delayToNextRun(new Date()));
+    }
+
+    @Test
+    void testInvalidExpressions() {
+        for (val expression : new String[]{"", "* * * *", "* * * * * * *", "60 * * * *", "* 24 * * *", "* * 0 * *",
+                "* * * 13 *", "* * * * 8", "*/0 * * * *", "5-1 * * * *", "a * * * *", "* * * FOO *"}) {
+            assertThrows(IllegalArgumentException.class, () -> KaalCronExpression.parse(expression), expression);
+        }
+    }
+
+    /**
+     * Compare against a minute by minute walk over the calendar for a week after random points in time
+     */
+    private static void checkAgainstCalendar(
+            final String expression,
+            final Predicate<ZonedDateTime> matches,
+            final Random random) {
+        val cron = KaalCronExpression.parse(expression, NEW_YORK);
+        for (int i = 0; i < 50; i++) {
+            val reference = millis("2026-01-01T00:00:00Z") + (long) (random.nextDouble() * 365 * 86_400_000L);
+            var expected = ZonedDateTime.ofInstant(Instant.ofEpochMilli(reference), NEW_YORK)
+                    .truncatedTo(ChronoUnit.MINUTES)
+                    .plusMinutes(1);
+            while (!matches.test(expected)) {
+                expected = expected.plusMinutes(1);
+            }
+            assertEquals(expected.toInstant().toEpochMilli(), cron.nextFireTime(reference), expression);
+        }
+    }
+
+    private static void assertNext(final String expression, final String reference, final String expected) {
+        val cron = KaalCronExpression.parse(expression, ZoneOffset.UTC);
+        assertEquals(millis(expected), cron.nextFireTime(millis(reference)), expression);
+    }
+
+    private static long millis(final String time) {
+        return Instant.parse(time).toEpochMilli();
+    }
+}
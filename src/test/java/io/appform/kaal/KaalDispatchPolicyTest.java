@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class KaalDispatchPolicyTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void testWeightedFair() {
+        val policy = new KaalWeightedFairDispatchPolicy<TestTask, String>(Map.of("critical", 4));
+        for (int i = 0; i < 1_000; i++) {
+            policy.add("bulk", run(i, START + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            policy.add("critical", run(1_000 + i, START + 10_000));
+        }
+        assertEquals(1_010, policy.size());
+        //Critical gets four dispatches for every bulk one, despite being due later and having fewer runs
+        var critical = 0;
+        for (int i = 0; i < 13; i++) {
+            if (policy.poll(group -> true).getTask().getIndex() >= 1_000) {
+                critical++;
+            }
+        }
+        assertEquals(10, critical);
+        //Bulk runs go out in order of their target execution time
+        var previous = Long.MIN_VALUE;
+        while (policy.size() > 0) {
+            val next = policy.poll(group -> true).getTargetExecutionTimeMillis();
+            assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void testWeightedFairIdleGroup() {
+        val policy = new KaalWeightedFairDispatchPolicy<TestTask, String>(Map.of());
+        for (int i = 0; i < 100; i++) {
+            policy.add("bulk", run(i, START + i));
+        }
+        for (int i = 0; i < 50; i++) {
+            policy.poll(group -> true);
+        }
+        //A group that becomes active later does not get to make up for the time it was idle
+        for (int i = 0; i < 10; i++) {
+            policy.add("other", run(100 + i, START + i));
+        }
+        var other = 0;
+        for (int i = 0; i < 10; i++) {
+            if (policy.poll(group -> true).getTask().getIndex() >= 100) {
+                other++;
+            }
+        }
+        assertTrue(other >= 4 && other <= 6);
+    }
+
+    @Test
+    void testEarliestDeadlineFirst() {
+        val policy = new KaalEdfDispatchPolicy<TestTask, String>(Map.of("bulk", 60_000L, "critical", 10L));
+        policy.add("bulk", run(0, START));
+        policy.add("bulk", run(1, START + 1));
+        policy.add("critical", run(2, START + 100));
+        policy.add(KaalDispatchPolicy.DEFAULT_GROUP, run(3, START + 200));
+        assertEquals(START, policy.nextDueTime(group -> true));
+        assertEquals(2, policy.poll(group -> true).getTask().getIndex());
+        assertEquals(3, policy.poll(group -> true).getTask().getIndex());
+        assertEquals(0, policy.poll(group -> true).getTask().getIndex());
+        assertEquals(1, policy.poll(group -> true).getTask().getIndex());
+        assertNull(policy.poll(group -> true));
+    }
+
+    @Test
+    void testIneligibleGroups() {
+        val policy = new KaalEdfDispatchPolicy<TestTask, String>();
+        val first = run(0, START);
+        policy.add("full", first);
+        policy.add("free", run(1, START + 100));
+        assertEquals(START + 100, policy.nextDueTime(group -> !group.equals("full")));
+        assertEquals(1, policy.poll(group -> !group.equals("full")).getTask().getIndex());
+        assertNull(policy.poll(group -> !group.equals("full")));
+        assertEquals(Long.MAX_VALUE, policy.nextDueTime(group -> !group.equals("full")));
+        assertTrue(policy.remove("full", first));
+        assertEquals(0, policy.size());
+        assertNull(policy.poll(group -> true));
+    }
+
+    @Test
+    void testInvalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new KaalWeightedFairDispatchPolicy<>(Map.of("a", 0)));
+        assertThrows(IllegalArgumentException.class, () -> new KaalEdfDispatchPolicy<>(Map.of("a", -1L)));
+    }
+
+    private static KaalTaskData<TestTask, String> run(int index, long targetTime) {
+        return new KaalTaskData<>("R" + index, new TestTask(index, 0), new Date(targetTime));
+    }
+}
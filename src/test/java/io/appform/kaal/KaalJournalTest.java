@@ -0,0 +1,158 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class KaalJournalTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @SneakyThrows
+    void testReplay() {
+        var journal = journal(1 << 20);
+        assertTrue(journal.open().isEmpty());
+        for (int i = 0; i < 10; i++) {
+            journal.scheduled(run("R" + i, i));
+        }
+        journal.completed(run("R0", 0));
+        journal.completed(run("R1", 0)); //Run id belongs to a different task, ignored
+        journal.deleted("TEST_TASK_2");
+        journal.scheduled(run("R10", 2)); //Scheduled again after delete
+        journal.scheduled(new KaalTaskData<>("R3", new TestTask(3, 1_000), START + 500)); //Delayed run
+        journal.close();
+
+        journal = journal(1 << 20);
+        val runs = byRunId(journal.open());
+        journal.close();
+        assertEquals(9, runs.size());
+        assertTrue(runs.keySet().containsAll(List.of("R1", "R3", "R4", "R5", "R6", "R7", "R8", "R9", "R10")));
+        assertEquals(START + 500, runs.get("R3").getTargetExecutionTimeMillis());
+        assertEquals(1_000, runs.get("R3").getTask().getDelay());
+        assertEquals("TEST_TASK_2", runs.get("R10").getTask().id());
+    }
+
+    @Test
+    @SneakyThrows
+    void testClear() {
+        var journal = journal(1 << 20);
+        journal.open();
+        journal.scheduled(run("R0", 0));
+        journal.deleted("TEST_TASK_1");
+        journal.cleared();
+        journal.scheduled(run("R1", 1));
+        journal.close();
+
+        journal = journal(1 << 20);
+        val runs = byRunId(journal.open());
+        journal.close();
+        assertEquals(List.of("R1"), List.copyOf(runs.keySet()));
+    }
+
+    @Test
+    @SneakyThrows
+    void testCompaction() {
+        var journal = journal(4096);
+        journal.open();
+        //Every task keeps getting rescheduled, so only the last run for each should survive
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 10; i++) {
+                if (round > 0) {
+                    journal.completed(run("R" + (round - 1) + "_" + i, i));
+                }
+                journal.scheduled(run("R" + round + "_" + i, i));
+            }
+        }
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> segmentCount() <= 2);
+        journal.close();
+
+        journal = journal(4096);
+        val runs = byRunId(journal.open());
+        journal.close();
+        assertEquals(10, runs.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, runs.get("R99_" + i).getTask().getIndex());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testTornRecord() {
+        var journal = journal(1 << 20);
+        journal.open();
+        journal.scheduled(run("R0", 0));
+        journal.scheduled(run("R1", 1));
+        journal.close();
+        //Corrupt the payload of the last record, as would be the case if the process died while writing it
+        try (val files = Files.list(directory);
+             val channel = FileChannel.open(files.findFirst().orElseThrow(), StandardOpenOption.WRITE,
+                                            StandardOpenOption.READ)) {
+            val segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            val firstLength = segment.getInt(0);
+            segment.put(2 * Integer.BYTES + firstLength + 2 * Integer.BYTES + 20, (byte) 0x7f);
+            segment.force();
+        }
+
+        journal = journal(1 << 20);
+        val runs = byRunId(journal.open());
+        journal.close();
+        assertEquals(List.of("R0"), List.copyOf(runs.keySet()));
+    }
+
+    private KaalJournal<TestTask, String> journal(int segmentSize) {
+        return new KaalJournal<>(directory, new TestTaskCodec(), segmentSize, 10);
+    }
+
+    @SneakyThrows
+    private long segmentCount() {
+        try (val files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static KaalTaskData<TestTask, String> run(String runId, int index) {
+        return new KaalTaskData<>(runId, new TestTask(index, 100), START + index);
+    }
+
+    private static Map<String, KaalTaskData<TestTask, String>> byRunId(List<KaalTaskData<TestTask, String>> runs) {
+        return runs.stream()
+                .collect(Collectors.toMap(KaalTaskData::getRunId, Function.identity()));
+    }
+}
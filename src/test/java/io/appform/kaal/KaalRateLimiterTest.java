@@ -0,0 +1,62 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ */
+class KaalRateLimiterTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void testReservations() {
+        val limiter = new KaalRateLimiter<TestTask, String>(
+                task -> task.getIndex() < 10 ? "api" : null,
+                Map.of("api", new KaalRateLimiter.Limit(10, 3)));
+        val limited = new TestTask(0, 100);
+        //Burst goes out right away, rest get permits spaced out at the configured rate
+        assertEquals(START, limiter.reserve(limited, START));
+        assertEquals(START, limiter.reserve(limited, START));
+        assertEquals(START, limiter.reserve(limited, START));
+        assertEquals(START + 100, limiter.reserve(limited, START));
+        assertEquals(START + 200, limiter.reserve(limited, START));
+        //Permits already reserved are honoured, nothing accrues while there is a backlog
+        assertEquals(START + 300, limiter.reserve(limited, START + 150));
+        //Idle time refills the bucket up to the burst size
+        assertEquals(START + 10_000, limiter.reserve(limited, START + 10_000));
+        assertEquals(START + 10_000, limiter.reserve(limited, START + 10_000));
+        assertEquals(START + 10_000, limiter.reserve(limited, START + 10_000));
+        assertEquals(START + 10_100, limiter.reserve(limited, START + 10_000));
+
+        val unlimited = new TestTask(10, 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(START, limiter.reserve(unlimited, START));
+        }
+    }
+
+    @Test
+    void testInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new KaalRateLimiter.Limit(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new KaalRateLimiter.Limit(10, 0));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class KaalRunTimeoutsTest {
+
+    @Test
+    @SneakyThrows
+    void testExpiry() {
+        val timeouts = new KaalRunTimeouts();
+        assertNull(timeouts.register(System.currentTimeMillis(), t -> {})); //Nothing started yet
+        timeouts.start();
+        val expired = new CopyOnWriteArrayList<Integer>();
+        val now = System.currentTimeMillis();
+        timeouts.register(now + 300, t -> expired.add(3));
+        timeouts.register(now + 100, t -> expired.add(1));
+        val cancelled = timeouts.register(now + 200, t -> expired.add(2));
+        timeouts.unregister(cancelled);
+        await()
+                .atMost(Duration.ofSeconds(2))
+                .until(() -> expired.size() == 2);
+        assertEquals(List.of(1, 3), expired);
+        assertEquals(0, timeouts.size());
+
+        //A thread stuck in a run is interrupted, and the interrupt does not outlive the run
+        val interrupted = new CountDownLatch(1);
+        val timeout = timeouts.register(System.currentTimeMillis() + 50, KaalRunTimeouts.Timeout::cancel);
+        timeout.runningOn(Thread.currentThread());
+        try {
+            Thread.sleep(5_000);
+        }
+        catch (InterruptedException e) {
+            interrupted.countDown();
+        }
+        timeout.runningOn(Thread.currentThread());
+        Thread.currentThread().interrupt(); //Raised as if the cancel came in just before the run returned
+        timeout.finishedRunning();
+        assertEquals(0, interrupted.getCount());
+        assertFalse(Thread.currentThread().isInterrupted());
+
+        //Stages set after the deadline has passed are cancelled right away
+        val stageTimeout = timeouts.register(System.currentTimeMillis() + 10, KaalRunTimeouts.Timeout::cancel);
+        val stage = new CompletableFuture<String>();
+        await()
+                .atMost(Duration.ofSeconds(2))
+                .until(() -> timeouts.size() == 0);
+        stageTimeout.completesWith(stage);
+        assertTrue(stage.isCancelled());
+
+        //So are threads that pick up the run after the deadline has passed
+        val lateTimeout = timeouts.register(System.currentTimeMillis() + 10, KaalRunTimeouts.Timeout::cancel);
+        await()
+                .atMost(Duration.ofSeconds(2))
+                .until(() -> timeouts.size() == 0);
+        lateTimeout.runningOn(Thread.currentThread());
+        assertTrue(Thread.currentThread().isInterrupted());
+        lateTimeout.finishedRunning();
+        assertFalse(Thread.currentThread().isInterrupted());
+        timeouts.stop();
+        assertNull(timeouts.register(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(1), t -> {}));
+    }
+}
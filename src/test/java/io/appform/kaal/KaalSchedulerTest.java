@@ -14,21 +14,44 @@
 
 package io.appform.kaal;
 
+import com.codahale.metrics.MetricRegistry;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -99,6 +122,442 @@ class KaalSchedulerTest {
         scheduler.stop();
     }
 
+    @Test
+    @SneakyThrows
+    void testSchedulerDeadlineDispatch() {
+        val called = new AtomicInteger();
+        val maxDrift = new AtomicLong();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> {
+            maxDrift.accumulateAndGet(td.drift(), Math::max);
+            called.incrementAndGet();
+        });
+        scheduler.start();
+        assertTrue(scheduler.schedule(new TestTask(1, 60_000)).isPresent());
+        //An earlier run needs to wake up the dispatcher parked on a far deadline
+        val task = new TestTask(0, 10);
+        assertTrue(scheduler.schedule(task).isPresent());
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> called.get() >= 10); //Delay is not raised to any polling interval
+        //Generous bound, only a dispatcher left parked on the far deadline would come anywhere close
+        assertTrue(maxDrift.get() < 1_000);
+        scheduler.delete(task.id());
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testSchedulerVirtualThreads() {
+        val called = new AtomicInteger();
+        val virtual = new AtomicBoolean(true);
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withVirtualThreads()
+                .build();
+        scheduler.onTaskCompleted().connect(td -> {
+            //Completion handlers run on the thread that executed the task
+            virtual.compareAndSet(true, Thread.currentThread().getClass().getName().contains("Virtual"));
+            called.incrementAndGet();
+        });
+        scheduler.start();
+        val task = new TestTask(0, 100);
+        assertTrue(scheduler.schedule(task).isPresent());
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> called.get() >= 3);
+        assertEquals(KaalExecutors.virtualThreadsSupported(), virtual.get());
+        scheduler.delete(task.id());
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testMaxInFlight() {
+        val called = new AtomicInteger();
+        val running = new AtomicInteger();
+        val maxRunning = new AtomicInteger();
+        val scheduler = KaalScheduler.<BlockingTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withMaxInFlight(2)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.incrementAndGet());
+        scheduler.start();
+        IntStream.range(0, 5)
+                .forEach(i -> assertTrue(scheduler.scheduleNow(
+                        new BlockingTask(i, 10, 100, running, maxRunning)).isPresent()));
+
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> called.get() >= 15);
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, scheduler.deferredRunCount()); //Held back in the queue, not deferred
+        IntStream.range(0, 5).forEach(i -> scheduler.delete("BLOCKING_TASK_" + i));
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testGroupQuota() {
+        val critical = Set.of("BLOCKING_TASK_0", "BLOCKING_TASK_1");
+        val criticalCompleted = new AtomicInteger();
+        val bulkRunning = new AtomicInteger();
+        val bulkMaxRunning = new AtomicInteger();
+        val criticalRunning = new AtomicInteger();
+        val criticalMaxRunning = new AtomicInteger();
+        val scheduler = KaalScheduler.<BlockingTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withMaxInFlight(3)
+                .withGroupExtractor(task -> critical.contains(task.id()) ? "critical" : "bulk")
+                .withGroupQuota("bulk", 2)
+                .withDispatchPolicy(() -> new KaalWeightedFairDispatchPolicy<>(Map.of("critical", 4)))
+                .build();
+        scheduler.onTaskCompleted().connect(td -> {
+            if (critical.contains(td.getTask().id())) {
+                criticalCompleted.incrementAndGet();
+            }
+        });
+        scheduler.start();
+        IntStream.range(0, 2)
+                .forEach(i -> scheduler.scheduleNow(
+                        new BlockingTask(i, 10, 50, criticalRunning, criticalMaxRunning)));
+        IntStream.range(100, 150)
+                .forEach(i -> scheduler.scheduleNow(new BlockingTask(i, 10, 50, bulkRunning, bulkMaxRunning)));
+
+        //Bulk tasks can never take up the last slot, so critical tasks keep running
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> criticalCompleted.get() >= 10);
+        scheduler.stop();
+        assertEquals(2, bulkMaxRunning.get());
+        assertTrue(criticalMaxRunning.get() >= 1);
+    }
+
+    @Test
+    @SneakyThrows
+    void testMaxInFlightPerTask() {
+        val called = new AtomicInteger();
+        val running = new AtomicInteger();
+        val maxRunning = new AtomicInteger();
+        val scheduler = KaalScheduler.<BlockingTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withMaxInFlightPerTask(1)
+                .withDeferralPolicy(KaalDeferralPolicy.SKIP)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.incrementAndGet());
+        scheduler.start();
+        val task = new BlockingTask(0, 10, 100, running, maxRunning);
+        //Second chain of runs for the same task gets dropped while the first run is underway
+        assertTrue(scheduler.scheduleNow(task).isPresent());
+        assertTrue(scheduler.scheduleAt(task, Date.from(Instant.now().plusMillis(20))).isPresent());
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> called.get() >= 5);
+        assertEquals(1, maxRunning.get());
+        assertEquals(1, scheduler.skippedRunCount());
+        scheduler.delete(task.id());
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testFixedRate() {
+        val called = new AtomicInteger();
+        val running = new AtomicInteger();
+        val maxRunning = new AtomicInteger();
+        val scheduler = KaalScheduler.<BlockingTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.incrementAndGet());
+        scheduler.start();
+        //Takes 250 ms to run on a 100 ms cadence
+        val task = new BlockingTask(0, 100, 250, running, maxRunning) {
+            @Override
+            public KaalScheduleMode scheduleMode() {
+                return KaalScheduleMode.FIXED_RATE;
+            }
+
+            @Override
+            public int maxConcurrentRuns() {
+                return 3;
+            }
+        };
+        assertTrue(scheduler.scheduleNow(task).isPresent());
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> called.get() >= 10);
+        //Runs overlap up to the limit instead of waiting for each other as they would with fixed delay
+        assertEquals(3, maxRunning.get());
+        scheduler.delete(task.id());
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testAsyncTask() {
+        val called = new AtomicInteger();
+        val failed = new AtomicInteger();
+        val executorService = Executors.newFixedThreadPool(2);
+        val scheduler = KaalScheduler.<AsyncTestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withExecutorService(executorService)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> {
+            if (null == td.getException()) {
+                assertEquals(td.getRunId(), td.getResult());
+                called.incrementAndGet();
+            }
+            else {
+                assertEquals("Forced failure", td.getException().getMessage());
+                failed.incrementAndGet();
+            }
+        });
+        scheduler.start();
+        //Two threads would need five seconds to run these if runs held a thread
+        val tasks = IntStream.range(0, 100)
+                .mapToObj(i -> new AsyncTestTask(i, 60_000, 100, i == 0))
+                .toList();
+        tasks.forEach(task -> assertTrue(scheduler.scheduleNow(task).isPresent()));
+
+        await()
+                .atMost(Duration.ofSeconds(2))
+                .until(() -> called.get() == 99 && failed.get() == 1);
+        tasks.forEach(task -> scheduler.delete(task.id()));
+        scheduler.stop();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    @SneakyThrows
+    void testCompletionPipeline() {
+        val runs = new AtomicInteger();
+        val delivered = new AtomicInteger();
+        val maxBatchSize = new AtomicInteger();
+        val batches = new AtomicInteger();
+        val release = new CountDownLatch(1);
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskStopStrategy(td -> runs.incrementAndGet() < 20)
+                .withCompletionPipeline(1_000, 100, 1, KaalOverflowPolicy.BLOCK)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> delivered.incrementAndGet());
+        scheduler.onTaskCompletionBatch().connect(batch -> {
+            maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+            batches.incrementAndGet();
+            try {
+                //Listener stays blocked till the test releases it, this must not hold up rescheduling
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        scheduler.start();
+        val task = new TestTask(0, 20);
+        assertTrue(scheduler.schedule(task).isPresent());
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> runs.get() == 20);
+        assertEquals(1, batches.get());
+        release.countDown();
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> delivered.get() == 20);
+        assertTrue(maxBatchSize.get() > 1);
+        assertEquals(0, scheduler.droppedCompletionCount());
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testCompletionPipelineOverflow() {
+        val runs = new AtomicInteger();
+        val delivered = new AtomicInteger();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskStopStrategy(td -> runs.incrementAndGet() > 0)
+                .withCompletionPipeline(2, 1, 1, KaalOverflowPolicy.DROP_OLDEST)
+                .build();
+        scheduler.onTaskCompletionBatch().connect(batch -> {
+            delivered.addAndGet(batch.size());
+            try {
+                Thread.sleep(200);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        scheduler.start();
+        val task = new TestTask(0, 10);
+        assertTrue(scheduler.schedule(task).isPresent());
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> runs.get() >= 30);
+        scheduler.delete(task.id());
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> delivered.get() + scheduler.droppedCompletionCount() == runs.get());
+        assertTrue(scheduler.droppedCompletionCount() > 0);
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testCompletionPipelineStop() {
+        val executor = Executors.newCachedThreadPool();
+        val release = new CountDownLatch(1);
+        val running = new AtomicInteger();
+        val scheduler = KaalScheduler.<BlockingTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withExecutorService(executor)
+                .withCompletionPipeline(1, 1, 1, KaalOverflowPolicy.BLOCK)
+                .build();
+        scheduler.onTaskCompletionBatch().connect(batch -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        scheduler.start();
+        IntStream.range(0, 5)
+                .forEach(i -> assertTrue(scheduler.scheduleNow(new BlockingTask(i, 60_000, 300, running,
+                                                                                new AtomicInteger()))
+                                                 .isPresent()));
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> scheduler.inFlight() == 5);
+        //Runs complete after stop, with the consumer stuck and the queue full they must not wait for space
+        scheduler.stop();
+        executor.shutdown();
+        try {
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertTrue(scheduler.droppedCompletionCount() > 0);
+        }
+        finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testMetrics() {
+        val registry = new MetricRegistry();
+        val scheduler = KaalScheduler.<FailTask, Void>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withMetrics(new KaalDropwizardMetrics(registry, "kaal", true))
+                .build();
+        scheduler.start();
+        val task = new FailTask();
+        assertTrue(scheduler.schedule(task).isPresent());
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> registry.meter("kaal.tasks.FAIL_TASK.failures").getCount() >= 3);
+        assertTrue(registry.timer("kaal.execution").getCount() >= 3);
+        assertTrue(registry.histogram("kaal.lag").getCount() >= 3);
+        assertEquals(1L, registry.getGauges().get("kaal.tasks.active").getValue());
+        assertTrue(registry.getGauges().containsKey("kaal.executor.active"));
+        val pending = registry.getGauges().get("kaal.tasks.FAIL_TASK.pending");
+        val inFlight = registry.getGauges().get("kaal.tasks.FAIL_TASK.in_flight");
+        assertEquals(1L, (Long) pending.getValue() + (Long) inFlight.getValue());
+        scheduler.delete(task.id());
+        assertEquals(0L, registry.getGauges().get("kaal.queue.size").getValue());
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> !registry.getGauges().containsKey("kaal.tasks.FAIL_TASK.pending"));
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testJournalRecovery(@TempDir Path directory) {
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withJournal(directory, new TestTaskCodec())
+                .build();
+        scheduler.start();
+        val runId = scheduler.schedule(new TestTask(0, 1_000)).orElseThrow();
+        assertTrue(scheduler.schedule(new TestTask(1, 1_000)).isPresent());
+        scheduler.delete("TEST_TASK_1");
+        scheduler.stop();
+
+        val completedRuns = new CopyOnWriteArrayList<String>();
+        val recovered = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskStopStrategy(td -> false)
+                .withJournal(directory, new TestTaskCodec())
+                .build();
+        recovered.onTaskCompleted().connect(td -> completedRuns.add(td.getRunId()));
+        recovered.start();
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> !completedRuns.isEmpty());
+        Thread.sleep(200);
+        assertEquals(List.of(runId), completedRuns); //Same run, deleted task does not come back
+        recovered.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testSnapshotRestore(@TempDir Path directory) {
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskCodec(new TestTaskCodec())
+                .build();
+        scheduler.start();
+        scheduler.scheduleAll(IntStream.range(0, 1_000).mapToObj(i -> new TestTask(i, 60_000 + i)).toList());
+        val snapshotFile = directory.resolve("snapshot");
+        assertEquals(1_000, scheduler.snapshot(snapshotFile));
+        scheduler.stop();
+
+        val restored = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withTaskCodec(new TestTaskCodec())
+                .buildSharded();
+        restored.start();
+        assertEquals(1_000, restored.restore(snapshotFile));
+        val output = new ByteArrayOutputStream();
+        assertEquals(1_000, restored.snapshot(output));
+        restored.stop();
+
+        //Same runs with the same deadlines
+        val expected = runsByRunId(Files.readAllBytes(snapshotFile));
+        val actual = runsByRunId(output.toByteArray());
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((runId, taskData) -> {
+            assertEquals(taskData.getTargetExecutionTimeMillis(), actual.get(runId).getTargetExecutionTimeMillis());
+            assertEquals(taskData.getTask().id(), actual.get(runId).getTask().id());
+        });
+    }
+
+    @Test
+    @SneakyThrows
+    void testSnapshotCorrupt() {
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withTaskCodec(new TestTaskCodec())
+                .build();
+        scheduler.start();
+        scheduler.scheduleAll(IntStream.range(0, 10).mapToObj(i -> new TestTask(i, 60_000)).toList());
+        val output = new ByteArrayOutputStream();
+        scheduler.snapshot(output);
+        val data = output.toByteArray();
+        data[data.length / 2] ^= 1;
+        assertThrows(IOException.class, () -> scheduler.restore(new ByteArrayInputStream(data)));
+        assertThrows(IOException.class,
+                     () -> scheduler.restore(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 10))));
+        scheduler.stop();
+    }
+
     @Test
     @SneakyThrows
     void testSchedulerLongRunningTaskDelete() {
@@ -125,6 +584,31 @@ class KaalSchedulerTest {
         scheduler.stop();
     }
 
+    @Test
+    @SneakyThrows
+    void testDeleteEvictsPendingRuns() {
+        val called = IntStream.range(0, 100)
+                .mapToObj(i -> new AtomicInteger())
+                .toList();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withPollingInterval(100)
+                .withTaskStopStrategy(taskData -> false)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.get(td.getTask().getIndex()).incrementAndGet());
+        scheduler.start();
+        IntStream.range(0, 100)
+                .forEach(i -> assertTrue(scheduler.schedule(new TestTask(i, 300)).isPresent()));
+        IntStream.range(0, 100)
+                .forEach(i -> scheduler.delete("TEST_TASK_" + i));
+        //Deleted task must be schedulable again right away
+        assertTrue(scheduler.schedule(new TestTask(0, 300)).isPresent());
+        val future = Date.from(Instant.now().plus(800, ChronoUnit.MILLIS));
+        await().forever().until(() -> new Date().after(future));
+        assertEquals(1, called.get(0).get());
+        assertTrue(IntStream.range(1, 100).allMatch(i -> called.get(i).get() == 0));
+        scheduler.stop();
+    }
+
     @Test
     @SneakyThrows
     void testSchedulerTaskException() {
@@ -183,6 +667,532 @@ class KaalSchedulerTest {
         scheduler.stop();
     }
 
+    @Test
+    @SneakyThrows
+    void testSchedulerTimingWheelQueue() {
+        val called = IntStream.range(0, 10)
+                .mapToObj(i -> new AtomicInteger())
+                .toList();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withPollingInterval(100)
+                .withTaskQueue(KaalTimingWheelTaskQueue::new)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.get(td.getTask().getIndex()).incrementAndGet());
+        scheduler.start();
+        IntStream.range(0, 10)
+                .forEach(i -> assertTrue(scheduler.schedule(new TestTask(i, 200)).isPresent()));
+
+        await()
+                .forever()
+                .pollInterval(Duration.ofMillis(100))
+                .until(() -> IntStream.range(0, 10)
+                        .allMatch(i -> called.get(i).get() >= 3));
+        scheduler.delete("TEST_TASK_0");
+        val count = called.get(0).get();
+        val future = Date.from(Instant.now().plus(500, ChronoUnit.MILLIS));
+        await().forever().until(() -> new Date().after(future));
+        assertTrue(called.get(0).get() <= count + 1); //At most one run that was already underway
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testShardedScheduler() {
+        val called = IntStream.range(0, 20)
+                .mapToObj(i -> new AtomicInteger())
+                .toList();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withPartitionCount(4)
+                .buildSharded();
+        assertEquals(4, scheduler.partitionCount());
+        scheduler.onTaskCompleted().connect(td -> called.get(td.getTask().getIndex()).incrementAndGet());
+        scheduler.start();
+        val threadNames = Thread.getAllStackTraces()
+                .keySet()
+                .stream()
+                .map(Thread::getName)
+                .collect(Collectors.toSet());
+        assertTrue(threadNames.containsAll(Set.of("kaal-dispatcher-0",
+                                                  "kaal-dispatcher-1",
+                                                  "kaal-dispatcher-2",
+                                                  "kaal-dispatcher-3")));
+        IntStream.range(0, 20)
+                .forEach(i -> assertTrue(scheduler.schedule(new TestTask(i, 100)).isPresent()));
+
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> IntStream.range(0, 20)
+                        .allMatch(i -> called.get(i).get() >= 3));
+        scheduler.delete("TEST_TASK_0");
+        val count = called.get(0).get();
+        val future = Date.from(Instant.now().plus(400, ChronoUnit.MILLIS));
+        await().forever().until(() -> new Date().after(future));
+        assertTrue(called.get(0).get() <= count + 1); //At most one run that was already underway
+        assertTrue(called.get(1).get() > count);
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testClusteredScheduler() {
+        val leaseStore = new KaalInMemoryLeaseStore();
+        val runners = IntStream.range(0, 20)
+                .mapToObj(i -> ConcurrentHashMap.<String>newKeySet())
+                .toList();
+        val nodes = IntStream.range(0, 3)
+                .mapToObj(i -> KaalScheduler.<TestTask, String>builder()
+                        .withDispatchMode(KaalDispatchMode.DEADLINE)
+                        .withPartitionCount(16)
+                        .withLeaseDuration(300)
+                        .buildClustered("NODE_" + i, leaseStore))
+                .toList();
+        val tasks = IntStream.range(0, 20)
+                .mapToObj(i -> new TestTask(i, 50))
+                .toList();
+        nodes.forEach(node -> {
+            node.onTaskCompleted().connect(td -> runners.get(td.getTask().getIndex()).add(node.nodeId()));
+            node.scheduleAll(tasks);
+            node.start();
+        });
+
+        awaitBalanced(nodes);
+        runners.forEach(Set::clear);
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> runners.stream().noneMatch(Set::isEmpty));
+        assertTrue(runners.stream().allMatch(nodeIds -> nodeIds.size() == 1)); //Every task runs on only one node
+        //Only the owning node reports run ids and pending runs for a task
+        val extra = new TestTask(100, 10_000);
+        val runIds = nodes.stream()
+                .map(node -> node.scheduleAll(List.of(extra)).get(0))
+                .toList();
+        assertEquals(1, runIds.stream().filter(Optional::isPresent).count());
+        assertEquals(1, nodes.stream().filter(node -> node.nextRun(extra.id()).isPresent()).count());
+        assertTrue(nodes.stream().mapToInt(KaalClusteredScheduler::pendingCount).sum() > 0);
+        nodes.forEach(node -> node.delete(extra.id()));
+
+        nodes.get(0).stop();
+        val remaining = nodes.subList(1, 3);
+        awaitBalanced(remaining);
+        assertTrue(nodes.get(0).ownedPartitions().isEmpty());
+        runners.forEach(Set::clear);
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> runners.stream().noneMatch(Set::isEmpty));
+        assertTrue(runners.stream().allMatch(nodeIds -> nodeIds.size() == 1
+                && !nodeIds.contains(nodes.get(0).nodeId())));
+        remaining.forEach(KaalClusteredScheduler::stop);
+    }
+
+    @Test
+    void testClusteredPartitionHandover() {
+        val leaseStore = new KaalInMemoryLeaseStore();
+        final Function<KaalMetrics, KaalSchedulerBuilder<TestTask, String>> builder
+                = metrics -> KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withMaxInFlight(4)
+                .withPartitionCount(8)
+                .withLeaseDuration(200)
+                .withMetrics(metrics);
+        val registry = new MetricRegistry();
+        val first = builder.apply(new KaalDropwizardMetrics(registry, "kaal")).buildClustered("NODE_0", leaseStore);
+        first.scheduleAll(IntStream.range(0, 20).mapToObj(i -> new TestTask(i, 50)).toList());
+        first.start();
+        awaitBalanced(List.of(first));
+        val admissionControl = first.partitionScheduler(0).getAdmissionControl();
+        assertEquals(8, admissionControl.capacityListenerCount());
+
+        //Partitions move to the other node and back every round
+        for (int round = 1; round <= 3; round++) {
+            val other = builder.apply(KaalMetrics.NOOP).buildClustered("NODE_" + round, leaseStore);
+            other.start();
+            awaitBalanced(List.of(first, other));
+            assertTrue(admissionControl.capacityListenerCount() < 8);
+            val owned = first.ownedPartitions();
+            assertTrue(IntStream.range(0, 8)
+                               .allMatch(i -> registry.getGauges().containsKey("kaal.partition." + i + ".queue.size")
+                                       == owned.contains(i)));
+            other.stop();
+            awaitBalanced(List.of(first));
+            assertEquals(8, admissionControl.capacityListenerCount());
+        }
+        first.stop();
+        assertEquals(0, admissionControl.capacityListenerCount());
+        assertTrue(registry.getGauges().isEmpty());
+    }
+
+    @Test
+    @SneakyThrows
+    void testScheduleAll() {
+        val called = IntStream.range(0, 1_000)
+                .mapToObj(i -> new AtomicInteger())
+                .toList();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withPollingInterval(100)
+                .withTaskStopStrategy(taskData -> false)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.get(td.getTask().getIndex()).incrementAndGet());
+        scheduler.start();
+        val tasks = IntStream.range(0, 1_000)
+                .mapToObj(i -> new TestTask(i, i == 0 ? -1 : 200))
+                .toList();
+        val runIds = scheduler.scheduleAll(tasks);
+        assertEquals(1_000, runIds.size());
+        assertTrue(runIds.get(0).isEmpty()); //Negative delay, so not scheduled
+        assertTrue(runIds.stream().skip(1).allMatch(Optional::isPresent));
+
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> IntStream.range(1, 1_000).allMatch(i -> called.get(i).get() == 1));
+        assertEquals(0, called.get(0).get());
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testJitter() {
+        val targets = IntStream.range(0, 200)
+                .mapToObj(i -> new CopyOnWriteArrayList<Long>())
+                .toList();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withJitter(KaalJitterPolicy.hashed(500))
+                .withTaskStopStrategy(taskData -> targets.get(taskData.getTask().getIndex()).size() < 2)
+                .build();
+        scheduler.onTaskCompleted()
+                .connect(td -> targets.get(td.getTask().getIndex()).add(td.getTargetExecutionTimeMillis()));
+        scheduler.start();
+        val referenceTime = new Date();
+        scheduler.scheduleAll(IntStream.range(0, 200).mapToObj(i -> new TestTask(i, 200)), referenceTime);
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> targets.stream().allMatch(runs -> runs.size() == 2));
+        scheduler.stop();
+        val firstRuns = targets.stream().map(runs -> runs.get(0)).toList();
+        assertTrue(firstRuns.stream()
+                           .allMatch(target -> target >= referenceTime.getTime() + 200
+                                   && target < referenceTime.getTime() + 700));
+        assertTrue(firstRuns.stream().distinct().count() > 100); //Spread over the window
+        //Jitter of a task stays the same, so it does not change the interval between runs
+        assertTrue(targets.stream()
+                           .map(runs -> runs.get(1) - runs.get(0))
+                           .allMatch(interval -> interval >= 200 && interval < 300));
+    }
+
+    @Test
+    @SneakyThrows
+    void testRateLimit() {
+        val called = IntStream.range(0, 20)
+                .mapToObj(i -> new AtomicInteger())
+                .toList();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withGroupExtractor(task -> task.getIndex() < 10 ? "api" : null)
+                .withRateLimit("api", 20)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.get(td.getTask().getIndex()).incrementAndGet());
+        scheduler.start();
+        val startTime = System.currentTimeMillis();
+        scheduler.scheduleAll(IntStream.range(0, 20).mapToObj(i -> new TestTask(i, 50)).toList());
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> IntStream.range(10, 20).allMatch(i -> called.get(i).get() >= 20));
+        scheduler.stop();
+        val elapsed = System.currentTimeMillis() - startTime;
+        val limitedRuns = IntStream.range(0, 10).map(i -> called.get(i).get()).sum();
+        assertTrue(limitedRuns <= elapsed * 20 / 1_000 + 2, "Runs: " + limitedRuns + " in " + elapsed + " ms");
+        assertTrue(IntStream.range(0, 10).allMatch(i -> called.get(i).get() > 0)); //Deferred, not dropped
+        assertTrue(scheduler.rateLimitedRunCount() > 0);
+    }
+
+    @Test
+    void testMisfirePolicies() {
+        //Last run was due two seconds ago on a 100 ms cadence, as if the process had stalled
+        val fireAll = runAfterStall(KaalMisfirePolicy.FIRE_ALL, 0, new TestTask(0, 100));
+        assertTrue(fireAll.runs() >= 15, "Runs: " + fireAll.runs()); //Missed runs are caught up back to back
+        assertTrue(fireAll.misfires() >= 10, "Misfires: " + fireAll.misfires());
+
+        val paced = runAfterStall(KaalMisfirePolicy.FIRE_ALL, 10, new TestTask(0, 100));
+        assertTrue(paced.runs() <= 9, "Runs: " + paced.runs());
+
+        val fireOnce = runAfterStall(KaalMisfirePolicy.FIRE_ONCE, 0, new TestTask(0, 100));
+        assertTrue(fireOnce.runs() <= 7, "Runs: " + fireOnce.runs());
+        assertEquals(1, fireOnce.misfires());
+
+        //Policy on the task takes precedence over the one on the scheduler
+        val skip = runAfterStall(KaalMisfirePolicy.FIRE_ALL, 0, new TestTask(0, 100) {
+            @Override
+            public KaalMisfirePolicy misfirePolicy() {
+                return KaalMisfirePolicy.SKIP;
+            }
+        });
+        assertTrue(skip.runs() <= 6, "Runs: " + skip.runs());
+        assertEquals(1, skip.misfires());
+    }
+
+    @Test
+    @SneakyThrows
+    void testMisfireCatchUpDoesNotHoldBackOtherRuns() {
+        val runs = IntStream.range(0, 6)
+                .mapToObj(i -> new AtomicInteger())
+                .toList();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withMisfirePolicy(KaalMisfirePolicy.FIRE_ALL)
+                .withMisfireThreshold(500)
+                .withMisfireCatchUpRate(2)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> runs.get(td.getTask().getIndex()).incrementAndGet());
+        scheduler.start();
+        val stalledAt = new Date(System.currentTimeMillis() - 2_000);
+        IntStream.range(0, 5)
+                .forEach(i -> assertTrue(scheduler.scheduleAt(new TestTask(i, 100), stalledAt).isPresent()));
+        assertTrue(scheduler.scheduleNow(new TestTask(5, 50)).isPresent());
+        Thread.sleep(600);
+        IntStream.range(0, 6).forEach(i -> scheduler.delete("TEST_TASK_" + i));
+        scheduler.stop();
+        //Misfired runs are paced, the task that is on time keeps its cadence
+        assertTrue(IntStream.range(0, 5).map(i -> runs.get(i).get()).sum() <= 4);
+        assertTrue(runs.get(5).get() >= 5, "Runs: " + runs.get(5).get());
+    }
+
+    private record StallOutcome(int runs, long misfires) {
+    }
+
+    @Test
+    void testRunTimeout() {
+        val running = new AtomicInteger();
+        val maxRunning = new AtomicInteger();
+        val timedOut = new AtomicInteger();
+        val scheduler = KaalScheduler.<BlockingTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withRunTimeout(200)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> {
+            if (td.getException() instanceof TimeoutException) {
+                timedOut.incrementAndGet();
+            }
+        });
+        scheduler.start();
+        //Would hold on to its thread for a minute on every run
+        val task = new BlockingTask(0, 50, 60_000, running, maxRunning);
+        scheduler.scheduleNow(task);
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> timedOut.get() >= 3);
+        scheduler.delete(task.id());
+        await() //Runs are interrupted, so none are left underway
+                .atMost(Duration.ofSeconds(1))
+                .until(() -> running.get() == 0);
+        scheduler.stop();
+        assertTrue(scheduler.timedOutRunCount() >= 3);
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    @SneakyThrows
+    void testBackoff() {
+        val called = new AtomicInteger();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withBackoff(KaalBackoffPolicy.exponential(100, 10_000, 0))
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.incrementAndGet());
+        scheduler.start();
+        val failing = new AtomicBoolean(true);
+        //Would run 50 times a second, backs off to 100, 200, 400 and 800 ms while failing
+        scheduler.scheduleNow(new FlakyTask(0, 20, failing));
+        Thread.sleep(1_200);
+        assertTrue(called.get() <= 6, "Runs: " + called.get());
+        assertTrue(scheduler.backedOffRunCount() >= 3);
+        failing.set(false);
+        //First success ends the backoff, runs are back to the normal rate
+        val recovered = called.get();
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> called.get() >= recovered + 20);
+        scheduler.stop();
+    }
+
+    @Test
+    @SneakyThrows
+    void testCircuitBreaker() {
+        val called = new AtomicInteger();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withGroupExtractor(task -> task.getIndex() < 10 ? "api" : null)
+                .withCircuitBreaker("api", 5, 300)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> called.incrementAndGet());
+        scheduler.start();
+        val failing = new AtomicBoolean(true);
+        scheduler.scheduleAll(IntStream.range(0, 10).<TestTask>mapToObj(i -> new FlakyTask(i, 50, failing)).toList());
+        Thread.sleep(1_000);
+        //Ten tasks would have run 200 times, the group is paused after five failures and probed every 300 ms
+        assertTrue(called.get() <= 20, "Runs: " + called.get());
+        assertTrue(scheduler.circuitHeldRunCount() > 0);
+        failing.set(false);
+        val recovered = called.get();
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> called.get() >= recovered + 100);
+        scheduler.stop();
+    }
+
+    private static class FlakyTask extends TestTask {
+        private final AtomicBoolean failing;
+
+        private FlakyTask(int index, long delay, AtomicBoolean failing) {
+            super(index, delay);
+            this.failing = failing;
+        }
+
+        @Override
+        public String apply(Date date, KaalTaskData<TestTask, String> taskData) {
+            if (failing.get()) {
+                throw new IllegalStateException("Downstream is down");
+            }
+            return taskData.getRunId();
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void testIntrospection() {
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .buildSharded();
+        val now = Instant.now();
+        //Not started, so runs stay in the queue
+        assertTrue(scheduler.scheduleAt(new TestTask(0, 10_000), Date.from(now.plusSeconds(10))).isPresent());
+        assertTrue(scheduler.scheduleAt(new TestTask(0, 10_000), Date.from(now.plusSeconds(5))).isPresent());
+        assertTrue(scheduler.scheduleAt(new TestTask(1, 10_000), Date.from(now.plusSeconds(2))).isPresent());
+        assertEquals(3, scheduler.pendingCount());
+        assertEquals(0, scheduler.inFlight());
+        assertEquals(now.plusSeconds(5).toEpochMilli(),
+                     scheduler.nextRun("TEST_TASK_0").orElseThrow().getTargetExecutionTimeMillis());
+        assertEquals(List.of(now.plusSeconds(5).toEpochMilli(), now.plusSeconds(10).toEpochMilli()),
+                     scheduler.pendingRuns("TEST_TASK_0")
+                             .stream()
+                             .map(KaalTaskData::getTargetExecutionTimeMillis)
+                             .toList());
+        assertEquals(Optional.of(Date.from(now.plusSeconds(2))), scheduler.earliestDeadline());
+        assertTrue(scheduler.nextRun("TEST_TASK_2").isEmpty());
+        scheduler.delete("TEST_TASK_1");
+        assertEquals(2, scheduler.pendingCount());
+        assertEquals(Optional.of(Date.from(now.plusSeconds(5))), scheduler.earliestDeadline());
+        scheduler.clear();
+        assertEquals(0, scheduler.pendingCount());
+        assertTrue(scheduler.earliestDeadline().isEmpty());
+
+        //The wheel only knows the slot a far run sits in, the deadline reported must still be the run's own
+        val wheelScheduler = KaalScheduler.<TestTask, String>builder()
+                .withTaskQueue(KaalTimingWheelTaskQueue::new)
+                .build();
+        val farRun = Date.from(now.plus(3, ChronoUnit.HOURS).plusMillis(37));
+        assertTrue(wheelScheduler.scheduleAt(new TestTask(0, 10_000), farRun).isPresent());
+        assertEquals(Optional.of(farRun), wheelScheduler.earliestDeadline());
+
+        val running = new AtomicInteger();
+        val blocking = KaalScheduler.<BlockingTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withMaxInFlightPerTask(1)
+                .withDeferralPolicy(KaalDeferralPolicy.WAIT)
+                .build();
+        blocking.start();
+        val task = new BlockingTask(0, 10_000, 500, running, new AtomicInteger());
+        assertTrue(blocking.scheduleNow(task).isPresent());
+        assertTrue(blocking.scheduleNow(task).isPresent());
+        //One run underway, the other waiting for it to finish
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> blocking.inFlight() == 1 && blocking.deferredRunCount() == 1);
+        assertEquals(1, blocking.inFlight(task.id()));
+        assertEquals(1, blocking.pendingCount());
+        assertEquals(1, blocking.pendingRuns(task.id()).size());
+        blocking.delete(task.id());
+        assertEquals(0, blocking.pendingCount());
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> blocking.inFlight() == 0 && running.get() == 0);
+        assertEquals(0, blocking.pendingCount());
+        blocking.stop();
+    }
+
+    @Test
+    void testAsyncRunTimeout() {
+        val results = new CopyOnWriteArrayList<KaalTaskData<AsyncTestTask, String>>();
+        val scheduler = KaalScheduler.<AsyncTestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .build();
+        scheduler.onTaskCompleted().connect(results::add);
+        scheduler.start();
+        val slow = new AsyncTestTask(0, 50, 10_000, false) {
+            @Override
+            public long runTimeout() {
+                return 100;
+            }
+        };
+        scheduler.scheduleNow(slow);
+        scheduler.scheduleNow(new AsyncTestTask(1, 50, 10, false));
+        await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> results.stream().filter(td -> td.getTask() == slow).count() >= 2);
+        scheduler.delete(slow.id());
+        scheduler.delete("ASYNC_TEST_TASK_1");
+        scheduler.stop();
+        results.forEach(td -> {
+            if (td.getTask() == slow) {
+                assertTrue(td.getException() instanceof TimeoutException);
+            }
+            else {
+                assertEquals(td.getRunId(), td.getResult()); //Tasks without a timeout are not affected
+            }
+        });
+    }
+
+    @SneakyThrows
+    private static StallOutcome runAfterStall(KaalMisfirePolicy policy, double catchUpRate, TestTask task) {
+        val called = new AtomicInteger();
+        val builder = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withMisfirePolicy(policy)
+                .withMisfireThreshold(500);
+        if (catchUpRate > 0) {
+            builder.withMisfireCatchUpRate(catchUpRate);
+        }
+        val scheduler = builder.build();
+        scheduler.onTaskCompleted().connect(td -> called.incrementAndGet());
+        scheduler.start();
+        assertTrue(scheduler.scheduleAt(task, new Date(System.currentTimeMillis() - 2_000)).isPresent());
+        Thread.sleep(550);
+        scheduler.delete(task.id());
+        scheduler.stop();
+        return new StallOutcome(called.get(), scheduler.misfiredRunCount());
+    }
+
+    @Test
+    @SneakyThrows
+    void testMaxDispatchesPerTick() {
+        val startTimes = new CopyOnWriteArrayList<Long>();
+        val scheduler = KaalScheduler.<TestTask, String>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .withPollingInterval(100)
+                .withMaxDispatchesPerTick(10)
+                .withTaskStopStrategy(taskData -> false)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> startTimes.add(td.getActualStartTimeMillis()));
+        scheduler.start();
+        scheduler.scheduleAll(IntStream.range(0, 50).mapToObj(i -> new TestTask(i, 100)).toList());
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> startTimes.size() == 50);
+        scheduler.stop();
+        val sorted = startTimes.stream().sorted().toList();
+        //Runs due at the same time are dispatched 10 at a time, one tick apart
+        assertTrue(sorted.get(49) - sorted.get(0) >= 350);
+    }
+
     @Test
     @SneakyThrows
     void testSchedulerCustomStopStrategy() {
@@ -260,4 +1270,44 @@ class KaalSchedulerTest {
 
         scheduler.stop();
     }
+
+    @Test
+    @SneakyThrows
+    void testCronTask() {
+        val targets = new CopyOnWriteArrayList<Long>();
+        val scheduler = KaalScheduler.<CronTestTask, Long>builder()
+                .withDispatchMode(KaalDispatchMode.DEADLINE)
+                .build();
+        scheduler.onTaskCompleted().connect(td -> targets.add(td.getResult()));
+        scheduler.start();
+        assertTrue(scheduler.schedule(new CronTestTask("*/1 * * * * *")).isPresent());
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> targets.size() >= 3);
+        scheduler.stop();
+        //Runs are due on second boundaries, one second apart
+        assertTrue(targets.stream().allMatch(target -> target % 1_000 == 0));
+        assertEquals(1_000, targets.get(1) - targets.get(0));
+        assertEquals(1_000, targets.get(2) - targets.get(1));
+    }
+
+    private static void awaitBalanced(final List<KaalClusteredScheduler<TestTask, String>> nodes) {
+        val nodeIds = nodes.stream()
+                .map(KaalClusteredScheduler::nodeId)
+                .collect(Collectors.toSet());
+        await()
+                .atMost(Duration.ofSeconds(10))
+                .until(() -> nodes.stream()
+                        .allMatch(node -> IntStream.range(0, node.partitionCount())
+                                .allMatch(i -> node.ownedPartitions().contains(i)
+                                        == node.nodeId().equals(KaalClusteredScheduler.ownerOf(i, nodeIds)))));
+    }
+
+    @SneakyThrows
+    private static Map<String, KaalTaskData<TestTask, String>> runsByRunId(byte[] snapshot) {
+        return KaalSnapshot.<TestTask, String>read(new TestTaskCodec(),
+                                                   Channels.newChannel(new ByteArrayInputStream(snapshot)))
+                .stream()
+                .collect(Collectors.toMap(KaalTaskData::getRunId, Function.identity()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class KaalTaskQueueTest {
+    private static final long START = 1_700_000_000_000L;
+
+    private static List<KaalTaskQueue<TestTask, String>> queues() {
+        return List.of(new KaalPriorityTaskQueue<>(), new KaalTimingWheelTaskQueue<>(START));
+    }
+
+    @Test
+    void testExpiryOrder() {
+        queues().forEach(this::testExpiryOrder);
+    }
+
+    private void testExpiryOrder(final KaalTaskQueue<TestTask, String> queue) {
+        val random = new Random(42);
+        val deadlines = new ArrayList<Long>();
+        for (int i = 0; i < 10_000; i++) {
+            //Spread across multiple wheel levels, including ones already due
+            val deadline = START - 1_000 + (long) (random.nextDouble() * random.nextDouble() * 100_000_000L);
+            deadlines.add(deadline);
+            queue.put(new KaalTaskData<>("R" + i, new TestTask(i, 0), new Date(deadline)));
+        }
+        assertEquals(10_000, queue.size());
+        deadlines.sort(Long::compareTo);
+        var expired = 0;
+        var expectedExpired = 0;
+        var time = START;
+        while (expired < deadlines.size()) {
+            time += random.nextInt(5_000);
+            KaalTaskData<TestTask, String> taskData;
+            while (null != (taskData = queue.pollDue(time))) {
+                assertTrue(taskData.getTargetExecutionTime().getTime() <= time);
+                expired++;
+            }
+            //Everything with a deadline at or before current time must have expired
+            while (expectedExpired < deadlines.size() && deadlines.get(expectedExpired) <= time) {
+                expectedExpired++;
+            }
+            assertEquals(expectedExpired, expired);
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testPutAll() {
+        queues().forEach(this::testPutAll);
+    }
+
+    private void testPutAll(final KaalTaskQueue<TestTask, String> queue) {
+        val random = new Random(42);
+        //Second batch is large enough to rebuild the heap, third one gets inserted one by one
+        for (val batchSize : List.of(10, 1_000, 100)) {
+            val batch = new ArrayList<KaalTaskData<TestTask, String>>();
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(new KaalTaskData<>("R" + i, new TestTask(i, 0), new Date(START + random.nextInt(100_000))));
+            }
+            queue.putAll(batch);
+        }
+        assertEquals(1_110, queue.size());
+        for (var time = START; time <= START + 100_000; time += 10) {
+            KaalTaskData<TestTask, String> taskData;
+            while (null != (taskData = queue.pollDue(time))) {
+                val deadline = taskData.getTargetExecutionTime().getTime();
+                assertTrue(deadline <= time);
+                assertTrue(deadline > time - 10);
+            }
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testRemove() {
+        queues().forEach(this::testRemove);
+    }
+
+    private void testRemove(final KaalTaskQueue<TestTask, String> queue) {
+        val runs = new ArrayList<KaalTaskData<TestTask, String>>();
+        for (int i = 0; i < 1_000; i++) {
+            val taskData = new KaalTaskData<>("R" + i, new TestTask(i, 0), new Date(START + i * 100L));
+            runs.add(taskData);
+            queue.put(taskData);
+        }
+        val removed = new HashSet<String>();
+        for (int i = 0; i < runs.size(); i += 3) {
+            assertTrue(queue.remove(runs.get(i)));
+            assertFalse(queue.remove(runs.get(i)));
+            removed.add(runs.get(i).getRunId());
+        }
+        assertEquals(runs.size() - removed.size(), queue.size());
+        KaalTaskData<TestTask, String> taskData;
+        var count = 0;
+        while (null != (taskData = queue.pollDue(Long.MAX_VALUE - 1))) {
+            assertFalse(removed.contains(taskData.getRunId()));
+            count++;
+        }
+        assertEquals(runs.size() - removed.size(), count);
+        assertNull(queue.pollDue(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void testEarliestDeadline() {
+        queues().forEach(this::testEarliestDeadline);
+    }
+
+    private void testEarliestDeadline(final KaalTaskQueue<TestTask, String> queue) {
+        val random = new Random(42);
+        val runs = new ArrayList<KaalTaskData<TestTask, String>>();
+        assertEquals(Long.MAX_VALUE, queue.earliestDeadline());
+        var time = START;
+        for (int i = 0; i < 5_000; i++) {
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    if (!runs.isEmpty()) {
+                        assertTrue(queue.remove(runs.remove(random.nextInt(runs.size()))));
+                    }
+                }
+                case 1 -> {
+                    time += random.nextInt(1_000);
+                    KaalTaskData<TestTask, String> taskData;
+                    while (null != (taskData = queue.pollDue(time))) {
+                        runs.remove(taskData);
+                    }
+                }
+                default -> {
+                    //Far enough out to land on the coarser levels of the wheel
+                    val taskData = new KaalTaskData<>("R" + i,
+                                                      new TestTask(i, 0),
+                                                      time + (long) (random.nextDouble() * 10_000_000L));
+                    runs.add(taskData);
+                    queue.put(taskData);
+                }
+            }
+            val expected = runs.stream()
+                    .mapToLong(KaalTaskData::getTargetExecutionTimeMillis)
+                    .min()
+                    .orElse(Long.MAX_VALUE);
+            assertEquals(expected, queue.earliestDeadline());
+        }
+    }
+
+    @Test
+    void testClear() {
+        queues().forEach(this::testClear);
+    }
+
+    private void testClear(final KaalTaskQueue<TestTask, String> queue) {
+        val taskData = new KaalTaskData<>("R", new TestTask(0, 0), new Date(START + 10));
+        queue.put(taskData);
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertFalse(queue.remove(taskData));
+        assertNull(queue.pollDue(START + 100));
+    }
+}
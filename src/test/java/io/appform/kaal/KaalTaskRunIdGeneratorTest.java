@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class KaalTaskRunIdGeneratorTest {
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void testSnowflakeLayout() {
+        val clock = new AtomicLong(START);
+        val generator = new KaalSnowflakeTaskRunIdGenerator<TestTask, String>(5, clock::get);
+        val task = new TestTask(0, 100);
+        val first = Long.parseUnsignedLong(generator.generateId(task, new Date()), 16);
+        assertEquals(START - KaalSnowflakeTaskRunIdGenerator.EPOCH,
+                     first >>> (KaalSnowflakeTaskRunIdGenerator.NODE_BITS
+                             + KaalSnowflakeTaskRunIdGenerator.SEQUENCE_BITS));
+        assertEquals(5, (first >>> KaalSnowflakeTaskRunIdGenerator.SEQUENCE_BITS)
+                & KaalSnowflakeTaskRunIdGenerator.MAX_NODE_ID);
+        assertEquals(16, generator.generateId(task, START).length());
+
+        //Ids keep increasing when the sequence for a millisecond runs out and when the clock goes backwards
+        var last = generator.nextRawId();
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) {
+                clock.set(START - 1_000);
+            }
+            val id = generator.nextRawId();
+            assertTrue(id > last);
+            last = id;
+        }
+        //Moving the clock forward moves the ids forward
+        clock.set(START + 60_000);
+        assertEquals(START + 60_000 - KaalSnowflakeTaskRunIdGenerator.EPOCH,
+                     generator.nextRawId() >>> (KaalSnowflakeTaskRunIdGenerator.NODE_BITS
+                             + KaalSnowflakeTaskRunIdGenerator.SEQUENCE_BITS));
+
+        assertThrows(IllegalArgumentException.class, () -> new KaalSnowflakeTaskRunIdGenerator<TestTask, String>(-1));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new KaalSnowflakeTaskRunIdGenerator<TestTask, String>(1024));
+    }
+
+    @Test
+    @SneakyThrows
+    void testSnowflakeConcurrentUniqueness() {
+        val generator = new KaalSnowflakeTaskRunIdGenerator<TestTask, String>(1);
+        val task = new TestTask(0, 100);
+        val threads = 4;
+        val perThread = 50_000;
+        val executor = Executors.newFixedThreadPool(threads);
+        try {
+            val jobs = new ArrayList<Callable<List<String>>>();
+            for (int t = 0; t < threads; t++) {
+                jobs.add(() -> {
+                    val ids = new ArrayList<String>(perThread);
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(generator.generateId(task, START));
+                    }
+                    return ids;
+                });
+            }
+            val all = new HashSet<String>();
+            for (val future : executor.invokeAll(jobs)) {
+                val ids = future.get();
+                for (int i = 1; i < ids.size(); i++) {
+                    assertTrue(ids.get(i).compareTo(ids.get(i - 1)) > 0);
+                }
+                all.addAll(ids);
+            }
+            assertEquals(threads * perThread, all.size());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testDeterministicIds() {
+        val generator = new KaalDeterministicTaskRunIdGenerator<TestTask, String>();
+        val task = new TestTask(3, 100);
+        assertEquals("TEST_TASK_3@" + START, generator.generateId(task, START));
+        assertEquals(generator.generateId(task, START), generator.generateId(task, new Date(START)));
+        assertEquals(generator.generateId(task, START), generator.generateId(new TestTask(3, 500), START));
+        assertNotEquals(generator.generateId(task, START), generator.generateId(task, START + 1));
+        assertNotEquals(generator.generateId(task, START), generator.generateId(new TestTask(4, 100), START));
+    }
+}
@@ -29,6 +29,7 @@ public class TestTask implements KaalTask<TestTask, String> {
 
     @Getter
     private final int index;
+    @Getter
     private final long delay;
 
     public TestTask(int index, long delay) {
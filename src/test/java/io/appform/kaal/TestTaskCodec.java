@@ -0,0 +1,38 @@
+/*
+ * Copyright 2023. Santanu Sinha
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.appform.kaal;
+
+import lombok.val;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a {@link TestTask} as it's index and delay
+ */
+public class TestTaskCodec implements KaalTaskCodec<TestTask> {
+    @Override
+    public byte[] encode(TestTask task) {
+        return ByteBuffer.allocate(Integer.BYTES + Long.BYTES)
+                .putInt(task.getIndex())
+                .putLong(task.getDelay())
+                .array();
+    }
+
+    @Override
+    public TestTask decode(byte[] data) {
+        val buffer = ByteBuffer.wrap(data);
+        return new TestTask(buffer.getInt(), buffer.getLong());
+    }
+}